@@ -0,0 +1,114 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Adapts the default-package assignment classes to the interfaces of the
+ * bench package; see bench.Subjects.
+ */
+public class BenchSubjects implements bench.Subjects {
+    public bench.Grid percolation(int n) {
+        return new PercolationGrid(n);
+    }
+
+    public double stats(ForkJoinPool pool, int n, int trials, long seed,
+            String sampling) {
+        return new PercolationStats(n, trials, new Xoshiro256StarStar(seed),
+                pool, PercolationStats.Sampling.valueOf(sampling)).mean();
+    }
+
+    public bench.IntQueue boxedDeque() {
+        return new BoxedDeque();
+    }
+
+    public bench.IntQueue intDeque() {
+        return new PrimitiveDeque();
+    }
+
+    private static final class PercolationGrid implements bench.Grid {
+        private final Percolation pr;
+
+        PercolationGrid(int n) {
+            pr = new Percolation(n);
+        }
+
+        public void open(int i, int j) {
+            pr.open(i, j);
+        }
+
+        public boolean isOpen(int i, int j) {
+            return pr.isOpen(i, j);
+        }
+
+        public boolean isFull(int i, int j) {
+            return pr.isFull(i, j);
+        }
+
+        public boolean percolates() {
+            return pr.percolates();
+        }
+    }
+
+    private static final class BoxedDeque implements bench.IntQueue {
+        private final Deque<Integer> dq = new Deque<Integer>();
+
+        public void addFirst(int item) {
+            dq.addFirst(item);
+        }
+
+        public void addLast(int item) {
+            dq.addLast(item);
+        }
+
+        public int removeFirst() {
+            return dq.removeFirst();
+        }
+
+        public int removeLast() {
+            return dq.removeLast();
+        }
+
+        public int size() {
+            return dq.size();
+        }
+
+        public long sum() {
+            long sum = 0;
+            for (int item : dq) {
+                sum += item;
+            }
+            return sum;
+        }
+    }
+
+    private static final class PrimitiveDeque implements bench.IntQueue {
+        private final IntDeque dq = new IntDeque();
+
+        public void addFirst(int item) {
+            dq.addFirst(item);
+        }
+
+        public void addLast(int item) {
+            dq.addLast(item);
+        }
+
+        public int removeFirst() {
+            return dq.removeFirst();
+        }
+
+        public int removeLast() {
+            return dq.removeLast();
+        }
+
+        public int size() {
+            return dq.size();
+        }
+
+        public long sum() {
+            long sum = 0;
+            for (java.util.PrimitiveIterator.OfInt it = dq.iterator(); it
+                    .hasNext();) {
+                sum += it.nextInt();
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Deque&lt;Integer&gt; against IntDeque on int work items: a
+ * queue that is filled at the back and drained at the front, a stack that
+ * is pushed and popped at the front, and iteration. Run with -prof gc to
+ * see the allocation the boxed deque makes per item.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DequeBenchmark {
+    @Param({ "boxed", "int" })
+    public String deque;
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private Subjects subjects;
+    private IntQueue full; // holds 0 to size - 1, for iteration
+    private IntQueue work; // empty between invocations, kept grown
+
+    @Setup
+    public void setUp() {
+        subjects = Subjects.load();
+        full = newDeque();
+        for (int k = 0; k < size; k++) {
+            full.addLast(k);
+        }
+        work = newDeque();
+    }
+
+    private IntQueue newDeque() {
+        return deque.equals("int") ? subjects.intDeque()
+                : subjects.boxedDeque();
+    }
+
+    /** addLast size items then removeFirst them all */
+    @Benchmark
+    public long queue() {
+        for (int k = 0; k < size; k++) {
+            work.addLast(k);
+        }
+        long sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += work.removeFirst();
+        }
+        return sum;
+    }
+
+    /** addFirst size items then removeFirst them all */
+    @Benchmark
+    public long stack() {
+        for (int k = 0; k < size; k++) {
+            work.addFirst(k);
+        }
+        long sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += work.removeFirst();
+        }
+        return sum;
+    }
+
+    /** sum the items of a full deque with its iterator */
+    @Benchmark
+    public long iterate() {
+        return full.sum();
+    }
+}
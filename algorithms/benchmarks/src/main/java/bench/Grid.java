@@ -0,0 +1,15 @@
+package bench;
+
+/**
+ * A percolation system as seen by the benchmarks: the public API of
+ * Percolation, which being in the default package cannot be named here.
+ */
+public interface Grid {
+    void open(int i, int j);
+
+    boolean isOpen(int i, int j);
+
+    boolean isFull(int i, int j);
+
+    boolean percolates();
+}
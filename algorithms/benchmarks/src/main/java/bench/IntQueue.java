@@ -0,0 +1,20 @@
+package bench;
+
+/**
+ * A deque of int values as seen by the benchmarks, implemented over both
+ * Deque&lt;Integer&gt; and IntDeque.
+ */
+public interface IntQueue {
+    void addFirst(int item);
+
+    void addLast(int item);
+
+    int removeFirst();
+
+    int removeLast();
+
+    int size();
+
+    /** the sum of the items, visited front to end by the deque's iterator */
+    long sum();
+}
@@ -0,0 +1,114 @@
+package bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Percolation on N-by-N grids: opening sites up to a given
+ * fraction of the grid in random order, and isFull / percolates queries on
+ * a grid opened to that fraction.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PercolationBenchmark {
+    private static final int QUERIES = 1 << 16; // must be a power of two
+
+    @Param({ "100", "1000", "10000" })
+    public int N;
+
+    @Param({ "0.3", "0.5927", "0.7" })
+    public double openFraction;
+
+    private Subjects subjects;
+    private int[] rows; // rows[k], cols[k] = k-th site to open
+    private int[] cols;
+    private Grid grid; // a grid with the first rows.length sites open
+    private int[] queryRows; // random sites for the query benchmarks
+    private int[] queryCols;
+    private int next; // next query
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        subjects = Subjects.load();
+        SplittableRandom random = new SplittableRandom(42);
+
+        // a random prefix of a permutation of the sites
+        int sites = N * N;
+        int opened = (int) (openFraction * sites);
+        int[] perm = new int[sites];
+        for (int s = 0; s < sites; s++) {
+            perm[s] = s;
+        }
+        rows = new int[opened];
+        cols = new int[opened];
+        for (int k = 0; k < opened; k++) {
+            int r = k + random.nextInt(sites - k);
+            int t = perm[k];
+            perm[k] = perm[r];
+            perm[r] = t;
+            rows[k] = perm[k] / N + 1;
+            cols[k] = perm[k] % N + 1;
+        }
+        perm = null;
+
+        grid = fill();
+        queryRows = new int[QUERIES];
+        queryCols = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            queryRows[q] = random.nextInt(1, N + 1);
+            queryCols[q] = random.nextInt(1, N + 1);
+        }
+    }
+
+    /** a new grid with the sites opened in order; time per grid */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Grid fill() {
+        Grid g = subjects.percolation(N);
+        for (int k = 0; k < rows.length; k++) {
+            g.open(rows[k], cols[k]);
+        }
+        return g;
+    }
+
+    /** isFull of a random site */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean isFull() {
+        int q = next++ & (QUERIES - 1);
+        return grid.isFull(queryRows[q], queryCols[q]);
+    }
+
+    /** isOpen of a random site */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean isOpen() {
+        int q = next++ & (QUERIES - 1);
+        return grid.isOpen(queryRows[q], queryCols[q]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean percolates() {
+        return grid.percolates();
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the PercolationStats experiment loop: the latency of one
+ * experiment (open sites until the grid percolates) for each sampling
+ * strategy. Each invocation runs a batch of experiments on one thread with
+ * a fresh seed, so the sampled times are per experiment. The single-thread
+ * pool the experiments run on is made once per trial, so starting and
+ * stopping it is not part of the measured time.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PercolationStatsBenchmark {
+    private static final int EXPERIMENTS = 16;
+
+    @Param({ "100", "300", "1000" })
+    public int N;
+
+    @Param({ "PERMUTATION", "REJECTION" })
+    public String sampling;
+
+    private Subjects subjects;
+    private long seed;
+
+    /** the pool shared by all invocations of a trial */
+    @State(Scope.Benchmark)
+    public static class Pool {
+        ForkJoinPool pool;
+
+        @Setup
+        public void setUp() {
+            pool = new ForkJoinPool(1);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        subjects = Subjects.load();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(EXPERIMENTS)
+    public double experiment(Pool pool) {
+        return subjects.stats(pool.pool, N, EXPERIMENTS, seed++, sampling);
+    }
+}
@@ -0,0 +1,41 @@
+package bench;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The classes under test. JMH will not generate benchmarks in the default
+ * package, and a named package cannot refer to default-package classes, so
+ * the benchmarks reach the assignment classes through this
+ * interface, implemented by BenchSubjects in the default package and loaded
+ * by name. Each call site sees a single implementation, so the JIT inlines
+ * straight through it.
+ */
+public interface Subjects {
+    /** a new N-by-N Percolation with all sites blocked */
+    Grid percolation(int n);
+
+    /**
+     * Runs PercolationStats with the given arguments on the given pool,
+     * which is left running
+     *
+     * @return the sample mean, so the work cannot be optimized away
+     */
+    double stats(ForkJoinPool pool, int n, int trials, long seed,
+            String sampling);
+
+    /** a new empty Deque&lt;Integer&gt; */
+    IntQueue boxedDeque();
+
+    /** a new empty IntDeque */
+    IntQueue intDeque();
+
+    /** the implementation in the default package */
+    static Subjects load() {
+        try {
+            return (Subjects) Class.forName("BenchSubjects")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchSubjects not found", e);
+        }
+    }
+}
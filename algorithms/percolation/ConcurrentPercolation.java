@@ -0,0 +1,228 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The ConcurrentPercolation class models a percolation system that several
+ * threads may open sites in at once. It uses a lock-free union-find: roots
+ * are linked with compareAndSet in the order of a fixed random priority of
+ * their index, paths are split with compareAndSet as they are walked, and
+ * the TOP/BOTTOM flags of a component are OR-ed into its root and re-checked
+ * until they land on a root that is still a root.
+ *
+ * Every method is thread-safe and none takes a lock. While opens are in
+ * flight, isFull may briefly lag an open that has not returned yet; once
+ * the opens that happened before a call have returned, the answers are the
+ * same as those of a Percolation with the same sites opened.
+ */
+public class ConcurrentPercolation {
+    private static final int TOP = 1; // component contains a top-row site
+    private static final int BOTTOM = 2; // component contains a bottom-row site
+
+    private AtomicLongArray open; // bit (s & 63) of word s >>> 6: s is open
+    private AtomicIntegerArray parent; // parent[s] = parent of s, s if root
+    private AtomicIntegerArray status; // status[r] = TOP/BOTTOM flags of r
+    private int len; // length of the grid
+    private volatile boolean percolates; // some component has both flags
+
+    /**
+     * Create a N-by-N grid, with all sites blocked
+     */
+    public ConcurrentPercolation(int N) {
+        if (N <= 0 || (long) N * N > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        len = N;
+        open = new AtomicLongArray((N * N + 63) >>> 6);
+        parent = new AtomicIntegerArray(N * N);
+        status = new AtomicIntegerArray(N * N);
+        for (int s = 0; s < N * N; s++) {
+            parent.lazySet(s, s);
+        }
+    }
+
+    /**
+     * Open site (row i, column j) if it is not open already, also union sites
+     */
+    public void open(int i, int j) {
+        validate(i, j);
+        int site = len * (i - 1) + (j - 1);
+        long bit = 1L << site;
+        int w = site >>> 6;
+        while (true) {
+            long word = open.get(w);
+            if ((word & bit) != 0) return; // opened by this or another thread
+            if (open.compareAndSet(w, word, word | bit)) break;
+        }
+
+        int flags = (i == 1 ? TOP : 0) | (i == len ? BOTTOM : 0);
+        if (flags != 0) {
+            addFlags(site, flags);
+        }
+
+        // union possible neighbor(s); of two neighbours opened at once, the
+        // second to set its bit is sure to see the first
+        if (i > 1 && isOpenSite(site - len)) {
+            union(site, site - len);
+        }
+        if (i < len && isOpenSite(site + len)) {
+            union(site, site + len);
+        }
+        if (j > 1 && isOpenSite(site - 1)) {
+            union(site, site - 1);
+        }
+        if (j < len && isOpenSite(site + 1)) {
+            union(site, site + 1);
+        }
+    }
+
+    /**
+     * Is site (row i, column j) open?
+     *
+     * @return true if site (row i, column j) is open; false otherwise
+     * @throws java.lang.IndexOutofBoundsException
+     *             unless both 1<= i <= N and 1 <= j <= N
+     */
+    public boolean isOpen(int i, int j) {
+        validate(i, j);
+        return isOpenSite(len * (i - 1) + (j - 1));
+    }
+
+    /**
+     * Is site (row i, column j) full?
+     *
+     * @return true if site (row i, column j) is full; false otherwise
+     * @throws java.lang.IndexOutofBoundsException
+     *             unless both 1<= i <= N and 1 <= j <= N
+     */
+    public boolean isFull(int i, int j) {
+        validate(i, j);
+        int site = len * (i - 1) + (j - 1);
+        return isOpenSite(site) && (status.get(find(site)) & TOP) != 0;
+    }
+
+    /**
+     * Does the system percolate?
+     *
+     * @return true of the system percolates; false otherwise
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // is the site with the given index open?
+    private boolean isOpenSite(int site) {
+        return (open.get(site >>> 6) & (1L << site)) != 0;
+    }
+
+    // throw an IndexOutOfBoundsException unless 1 <= i <= N and 1 <= j <= N
+    private void validate(int i, int j) {
+        if (i <= 0 || i > len || j <= 0 || j > len)
+            throw new IndexOutOfBoundsException("site (" + i + ", " + j
+                    + ") outside 1.." + len);
+    }
+
+    // a fixed pseudo-random ordering of the sites (a bijection on int), so
+    // that linking lower priority under higher keeps the trees shallow
+    private static int priority(int p) {
+        int h = p * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    // root of the tree containing p, splitting the path on the way up
+    private int find(int p) {
+        while (true) {
+            int q = parent.get(p);
+            if (q == p) return p;
+            int r = parent.get(q);
+            if (q != r) parent.compareAndSet(p, q, r);
+            p = q;
+        }
+    }
+
+    // merge the trees containing p and q, lower priority root under higher
+    private void union(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) return;
+            if (priority(rootP) > priority(rootQ)) {
+                int t = rootP;
+                rootP = rootQ;
+                rootQ = t;
+            }
+            if (parent.compareAndSet(rootP, rootP, rootQ)) {
+                // flags set on rootP before the link are read here; any set
+                // after it are moved on by their setter, see addFlags
+                addFlags(rootQ, status.get(rootP));
+                return;
+            }
+        }
+    }
+
+    // OR flags into the root of the tree containing p; if that root is
+    // linked under another meanwhile, carry its flags up to the new root
+    private void addFlags(int p, int flags) {
+        int root = find(p);
+        while (true) {
+            int old = status.get(root);
+            int merged = old | flags;
+            if (merged != old && !status.compareAndSet(root, old, merged)) {
+                continue;
+            }
+            if (merged == (TOP | BOTTOM)) {
+                percolates = true;
+            }
+            if (parent.get(root) == root) return;
+            flags = merged;
+            root = find(root);
+        }
+    }
+
+    // open random sites of an N-by-N grid from several threads at once,
+    // then check the result against Percolation
+    public static void main(String[] args) throws InterruptedException {
+        final int N = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2])
+                : System.nanoTime();
+
+        final ConcurrentPercolation cp = new ConcurrentPercolation(N);
+        final RandomSource master = new Xoshiro256StarStar(seed);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final RandomSource random = master.split();
+            final int opens = N * N / 2 / threads;
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int k = 0; k < opens; k++) {
+                        cp.open(random.uniform(1, N + 1),
+                                random.uniform(1, N + 1));
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        long elapsed = System.nanoTime() - start;
+
+        Percolation pr = new Percolation(N);
+        for (int i = 1; i <= N; i++) {
+            for (int j = 1; j <= N; j++) {
+                if (cp.isOpen(i, j)) pr.open(i, j);
+            }
+        }
+        boolean same = cp.percolates() == pr.percolates();
+        for (int i = 1; i <= N && same; i++) {
+            for (int j = 1; j <= N && same; j++) {
+                same = cp.isFull(i, j) == pr.isFull(i, j);
+            }
+        }
+        StdOut.println("percolates = " + cp.percolates());
+        StdOut.println("opened in " + elapsed / 1000000 + " ms on " + threads
+                + " threads");
+        StdOut.println("matches Percolation = " + same);
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * The FlatUnionFind class holds the weighted quick-union with path halving
+ * shared by PercolationCurve and StripedPercolation. The forest lives in the
+ * caller's own array: parent[s] is the parent of site s, or -(tree size) if s
+ * is a root, so sizes need no second array. Callers keep any per-root data,
+ * such as TOP/BOTTOM flags, themselves. Percolation, whose sites outgrow an
+ * int, keeps the same forest on paged arrays of its own.
+ */
+final class FlatUnionFind {
+    private FlatUnionFind() { }
+
+    /**
+     * Returns the root of the tree containing p, halving the path on the way
+     * up
+     *
+     * @return the root of the tree containing p
+     */
+    static int find(int[] parent, int p) {
+        while (parent[p] >= 0) {
+            int grandparent = parent[parent[p]];
+            if (grandparent >= 0) {
+                parent[p] = grandparent;
+                p = grandparent;
+            } else {
+                p = parent[p];
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Links the trees with distinct roots rootP and rootQ, the smaller tree
+     * under the larger, or under rootP if they are the same size
+     *
+     * @return the root of the merged tree
+     */
+    static int link(int[] parent, int rootP, int rootQ) {
+        if (parent[rootP] > parent[rootQ]) { // sizes are stored negated
+            int t = rootP;
+            rootP = rootQ;
+            rootQ = t;
+        }
+        parent[rootP] += parent[rootQ];
+        parent[rootQ] = rootP;
+        return rootP;
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The MappedArrays class copies paged primitive arrays to and from a file
+ * through memory-mapped regions, so a snapshot of a large grid is written or
+ * read with bulk copies rather than a stream of small writes. The pages of an
+ * array are stored back to back, as if they were one array. Regions are
+ * mapped at most 1 GiB at a time, and values are stored little-endian. Each
+ * region written is forced to the storage device before write() returns,
+ * since FileChannel.force() does not promise to flush changes made through a
+ * mapping.
+ */
+final class MappedArrays {
+    private static final int CHUNK = 1 << 30; // bytes mapped at a time
+
+    private MappedArrays() { }
+
+    /**
+     * Writes the pages at the given position of the file and forces them to
+     * disk; no page may be longer than 1 GiB
+     *
+     * @return the position just past the last byte written
+     */
+    static long write(FileChannel ch, long pos, long[][] pages)
+            throws IOException {
+        long end = pos + 8 * length(pages);
+        MappedByteBuffer buf = null;
+        for (long[] page : pages) {
+            if (buf == null || buf.remaining() < 8 * page.length) {
+                if (buf != null) buf.force();
+                buf = map(ch, FileChannel.MapMode.READ_WRITE, pos, end - pos);
+            }
+            buf.asLongBuffer().put(page);
+            buf.position(buf.position() + 8 * page.length);
+            pos += 8L * page.length;
+        }
+        if (buf != null) buf.force();
+        return pos;
+    }
+
+    /**
+     * Writes the pages at the given position of the file and forces them to
+     * disk; no page may be longer than 1 GiB
+     *
+     * @return the position just past the last byte written
+     */
+    static long write(FileChannel ch, long pos, int[][] pages)
+            throws IOException {
+        long end = pos + 4 * length(pages);
+        MappedByteBuffer buf = null;
+        for (int[] page : pages) {
+            if (buf == null || buf.remaining() < 4 * page.length) {
+                if (buf != null) buf.force();
+                buf = map(ch, FileChannel.MapMode.READ_WRITE, pos, end - pos);
+            }
+            buf.asIntBuffer().put(page);
+            buf.position(buf.position() + 4 * page.length);
+            pos += 4L * page.length;
+        }
+        if (buf != null) buf.force();
+        return pos;
+    }
+
+    /**
+     * Writes the pages at the given position of the file and forces them to
+     * disk; no page may be longer than 1 GiB
+     *
+     * @return the position just past the last byte written
+     */
+    static long write(FileChannel ch, long pos, byte[][] pages)
+            throws IOException {
+        long end = pos + length(pages);
+        MappedByteBuffer buf = null;
+        for (byte[] page : pages) {
+            if (buf == null || buf.remaining() < page.length) {
+                if (buf != null) buf.force();
+                buf = map(ch, FileChannel.MapMode.READ_WRITE, pos, end - pos);
+            }
+            buf.put(page);
+            pos += page.length;
+        }
+        if (buf != null) buf.force();
+        return pos;
+    }
+
+    /**
+     * Fills the pages from the given position of the file
+     *
+     * @return the position just past the last byte read
+     */
+    static long read(FileChannel ch, long pos, long[][] pages)
+            throws IOException {
+        long end = pos + 8 * length(pages);
+        MappedByteBuffer buf = null;
+        for (long[] page : pages) {
+            if (buf == null || buf.remaining() < 8 * page.length)
+                buf = map(ch, FileChannel.MapMode.READ_ONLY, pos, end - pos);
+            buf.asLongBuffer().get(page);
+            buf.position(buf.position() + 8 * page.length);
+            pos += 8L * page.length;
+        }
+        return pos;
+    }
+
+    /**
+     * Fills the pages from the given position of the file
+     *
+     * @return the position just past the last byte read
+     */
+    static long read(FileChannel ch, long pos, int[][] pages)
+            throws IOException {
+        long end = pos + 4 * length(pages);
+        MappedByteBuffer buf = null;
+        for (int[] page : pages) {
+            if (buf == null || buf.remaining() < 4 * page.length)
+                buf = map(ch, FileChannel.MapMode.READ_ONLY, pos, end - pos);
+            buf.asIntBuffer().get(page);
+            buf.position(buf.position() + 4 * page.length);
+            pos += 4L * page.length;
+        }
+        return pos;
+    }
+
+    /**
+     * Fills the pages from the given position of the file
+     *
+     * @return the position just past the last byte read
+     */
+    static long read(FileChannel ch, long pos, byte[][] pages)
+            throws IOException {
+        long end = pos + length(pages);
+        MappedByteBuffer buf = null;
+        for (byte[] page : pages) {
+            if (buf == null || buf.remaining() < page.length)
+                buf = map(ch, FileChannel.MapMode.READ_ONLY, pos, end - pos);
+            buf.get(page);
+            pos += page.length;
+        }
+        return pos;
+    }
+
+    // total number of elements on the pages
+    private static long length(Object[] pages) {
+        long n = 0;
+        for (Object page : pages) {
+            n += Array.getLength(page);
+        }
+        return n;
+    }
+
+    // map up to 1 GiB of the file from pos, but no further than size bytes,
+    // failing if a read runs past its end
+    private static MappedByteBuffer map(FileChannel ch,
+            FileChannel.MapMode mode, long pos, long size) throws IOException {
+        size = Math.min(size, CHUNK);
+        if (mode == FileChannel.MapMode.READ_ONLY && pos + size > ch.size())
+            throw new IOException("snapshot truncated at byte " + ch.size());
+        MappedByteBuffer buf = ch.map(mode, pos, size);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+}
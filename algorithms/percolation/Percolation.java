@@ -1,93 +1,439 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
 /**
- * The Percolation class models a percolation system.
- * 
+ * The Percolation class models a percolation system. (Using a bit-packed open
+ * grid and a flat-array weighted quick-union with path compression, whose
+ * roots record whether their component touches the top or bottom row)
+ *
+ * Sites are numbered by long and every array is split into pages of 2^20
+ * elements, so no single array limits the grid: any N up to 65535 can be
+ * built, at about 5 bytes a site (some 13 GB of heap for N = 50000).
+ *
  * @author Shuai Wang
  */
 public class Percolation {
-    private boolean[][] grid; // grid[i][j] = site at row i, column j
+    // largest N such that every site index and tree size fits in 32 bits
+    static final int MAX_N = 65535;
+    private static final int PAGE_BITS = 20; // log2 of elements per page
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private static final byte TOP = 1; // component contains a top-row site
+    private static final byte BOTTOM = 2; // component contains a bottom-row site
+    private static final byte LINKED = 4; // site is not a root
+    private static final int SNAPSHOT_MAGIC = 0x50455243; // "PERC"
+    private static final int SNAPSHOT_VERSION = 1;
+    // magic, version, N, percolates, then clusters and largest as longs
+    private static final int SNAPSHOT_HEADER = 32;
+
+    // open[w >>> PAGE_BITS][w & PAGE_MASK] is word w of the open bitmap,
+    // whose bit (s & 63) of word s >>> 6 is set if site s is open
+    private long[][] open;
+    // parent of site s, read as unsigned, if s is LINKED; else tree size - 1
+    private int[][] parent;
+    private byte[][] status; // TOP/BOTTOM flags of roots, LINKED of the rest
     private int len; // length of the grid
-    private int top = 0; // virtual top
-    private int bottom; // virtual bottom
-    private WeightedQuickUnionUF uf; // a WeightedQuickUnionUF instance
+    private long sites; // number of sites, N * N
+    private boolean percolates; // some component has both TOP and BOTTOM
+    private long clusters; // number of components of open sites
+    private long largest; // size of the largest component of open sites
+    // union-find counters, null unless PercolationMetrics.ENABLED
+    private PercolationMetrics.Counters counters;
 
     /**
      * Create a N-by-N grid, with all sites blocked
      */
     public Percolation(int N) {
-        if (N <= 0) throw new IllegalArgumentException();
+        if (N <= 0 || N > MAX_N) throw new IllegalArgumentException();
         len = N;
-        grid = new boolean[N][N];
-        bottom = N * N + 1;
-        uf = new WeightedQuickUnionUF(N * N + 2);
+        sites = (long) N * N;
+        long words = (sites + 63) >>> 6;
+        open = new long[pages(words)][];
+        for (int k = 0; k < open.length; k++) {
+            open[k] = new long[pageLength(words, k)];
+        }
+        // all zero: every site a root of size 1 with no flags
+        parent = new int[pages(sites)][];
+        status = new byte[pages(sites)][];
+        for (int k = 0; k < parent.length; k++) {
+            parent[k] = new int[pageLength(sites, k)];
+            status[k] = new byte[pageLength(sites, k)];
+        }
+        if (PercolationMetrics.ENABLED) {
+            counters = new PercolationMetrics.Counters();
+        }
+    }
+
+    // number of pages holding n elements
+    private static int pages(long n) {
+        return (int) ((n + PAGE_MASK) >>> PAGE_BITS);
+    }
+
+    // length of page k of n elements; only the last page is cut short
+    private static int pageLength(long n, int k) {
+        return (int) Math.min(PAGE_MASK + 1, n - ((long) k << PAGE_BITS));
     }
 
     /**
      * Open site (row i, column j) if it is not open already, also union sites
      */
     public void open(int i, int j) {
-        grid[i - 1][j - 1] = true;
+        validate(i, j);
+        openSite(getSiteIndex(i, j), i - 1, j - 1);
+    }
 
-        if (i == 1) { // union virtual top
-            uf.union(getSiteIndex(i, j), top);
+    /**
+     * Open every site in the array, given by its index N * (i - 1) + (j - 1);
+     * sites past Integer.MAX_VALUE can only be opened by row and column or
+     * through a bitmap
+     *
+     * @param sites
+     *            the indices of the sites to open
+     * @throws java.lang.IndexOutofBoundsException
+     *             unless every index is between 0 and N * N - 1
+     */
+    public void open(int[] sites) {
+        for (int site : sites) {
+            if (site < 0 || site >= this.sites)
+                throw new IndexOutOfBoundsException("site " + site
+                        + " outside 0.." + (this.sites - 1));
+            openSite(site, site / len, site % len);
         }
-        if (i == len) { // union virtual bottom
-            uf.union(getSiteIndex(i, j), bottom);
+    }
+
+    /**
+     * Open every site whose bit is set in the bitmap, site N * (i - 1) +
+     * (j - 1) being bit (s &amp; 63) of bits[s &gt;&gt;&gt; 6]
+     *
+     * @param bits
+     *            the bitmap of sites to open; bits past N * N are ignored
+     */
+    public void open(long[] bits) {
+        int words = (int) Math.min(bits.length, (sites + 63) >>> 6);
+        for (int w = 0; w < words; w++) {
+            openWord(w, bits[w]);
+        }
+    }
+
+    /**
+     * Open every site set in a packed bit-grid file, which holds site s =
+     * N * (i - 1) + (j - 1) as bit (s &amp; 7) of byte s &gt;&gt;&gt; 3. The
+     * file is memory-mapped and read a word at a time.
+     *
+     * @param file
+     *            a file of at least (N * N + 7) / 8 bytes
+     * @throws java.io.IOException
+     *             if the file cannot be read or is too short
+     */
+    public void open(Path file) throws IOException {
+        long bytes = (sites + 7) >>> 3;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (in.size() < bytes)
+                throw new IOException(file + ": " + in.size()
+                        + " bytes, expected " + bytes);
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0,
+                    bytes);
+            map.order(ByteOrder.LITTLE_ENDIAN); // byte k holds bits 8k..8k+7
+            long w = 0;
+            for (; map.remaining() >= 8; w++) {
+                openWord(w, map.getLong());
+            }
+            long tail = 0;
+            for (int shift = 0; map.hasRemaining(); shift += 8) {
+                tail |= (map.get() & 0xFFL) << shift;
+            }
+            if (w << 6 < sites) openWord(w, tail);
+        }
+    }
+
+    // open the sites set in word w of a bitmap
+    private void openWord(long w, long word) {
+        word &= ~open[(int) (w >>> PAGE_BITS)][(int) w & PAGE_MASK];
+        while (word != 0) {
+            long site = (w << 6) + Long.numberOfTrailingZeros(word);
+            if (site >= sites) return;
+            long row = site / len;
+            openSite(site, (int) row, (int) (site - row * len));
+            word &= word - 1;
+        }
+    }
+
+    // open the site with the given index, in the given zero-based row and
+    // column, if it is not open already, also union it with its open
+    // neighbors
+    private void openSite(long site, int row, int col) {
+        if (isOpenSite(site)) return;
+        long w = site >>> 6;
+        open[(int) (w >>> PAGE_BITS)][(int) w & PAGE_MASK] |= 1L << site;
+        clusters++;
+
+        if (row == 0) { // connected to the top
+            setStatus(site, (byte) (status(site) | TOP));
+        }
+        if (row == len - 1) { // connected to the bottom
+            setStatus(site, (byte) (status(site) | BOTTOM));
         }
 
         // union possible neighbor(s)
-        if (i > 1 && isOpen(i - 1, j)) {
-            uf.union(getSiteIndex(i, j), getSiteIndex(i - 1, j));
+        if (row > 0 && isOpenSite(site - len)) {
+            union(site, site - len);
         }
-        if (i < len && isOpen(i + 1, j)) {
-            uf.union(getSiteIndex(i, j), getSiteIndex(i + 1, j));
+        if (row < len - 1 && isOpenSite(site + len)) {
+            union(site, site + len);
         }
-        if (j > 1 && isOpen(i, j - 1)) {
-            uf.union(getSiteIndex(i, j), getSiteIndex(i, j - 1));
+        if (col > 0 && isOpenSite(site - 1)) {
+            union(site, site - 1);
         }
-        if (j < len && isOpen(i, j + 1)) {
-            uf.union(getSiteIndex(i, j), getSiteIndex(i, j + 1));
+        if (col < len - 1 && isOpenSite(site + 1)) {
+            union(site, site + 1);
+        }
+
+        long root = find(site);
+        largest = Math.max(largest, size(root));
+        if (status(root) == (TOP | BOTTOM)) {
+            percolates = true;
         }
     }
 
     /**
      * Is site (row i, column j) open?
-     * 
+     *
      * @return true if site (row i, column j) is open; false otherwise
      * @throws java.lang.IndexOutofBoundsException
      *             unless both 1<= i <= N and 1 <= j <= N
      */
     public boolean isOpen(int i, int j) {
-        return grid[i - 1][j - 1];
+        validate(i, j);
+        return isOpenSite(getSiteIndex(i, j));
     }
 
     /**
      * Is site (row i, column j) full?
-     * 
+     *
      * @return true if site (row i, column j) is full; false otherwise
      * @throws java.lang.IndexOutofBoundsException
      *             unless both 1<= i <= N and 1 <= j <= N
      */
     public boolean isFull(int i, int j) {
-        if (i <= 0 || i > len || j <= 0 || j > len) throw new IndexOutOfBoundsException(); 
-        return uf.connected(getSiteIndex(i, j), top);
+        validate(i, j);
+        long site = getSiteIndex(i, j);
+        return isOpenSite(site) && (status(find(site)) & TOP) != 0;
     }
 
     /**
      * Does the system percolate?
-     * 
+     *
      * @return true of the system percolates; false otherwise
      */
     public boolean percolates() {
-        return uf.connected(top, bottom);
+        return percolates;
+    }
+
+    /**
+     * Returns the number of clusters of open sites
+     *
+     * @return the number of clusters of open sites
+     */
+    public long numberOfClusters() {
+        return clusters;
+    }
+
+    /**
+     * Returns the number of sites in the largest cluster of open sites
+     *
+     * @return the number of sites in the largest cluster, 0 if none is open
+     */
+    public long largestClusterSize() {
+        return largest;
+    }
+
+    /**
+     * Returns the number of sites in the cluster containing site (row i,
+     * column j)
+     *
+     * @return the size of the cluster containing site (row i, column j), or 0
+     *         if the site is blocked
+     * @throws java.lang.IndexOutofBoundsException
+     *             unless both 1<= i <= N and 1 <= j <= N
+     */
+    public long clusterSize(int i, int j) {
+        validate(i, j);
+        long site = getSiteIndex(i, j);
+        if (!isOpenSite(site)) return 0;
+        return size(find(site));
+    }
+
+    /**
+     * Save a snapshot of this system: a 32-byte header (magic, version, N,
+     * percolates, number of clusters, largest cluster) followed by the open
+     * bitmap, the union-find parents and the site flags, all little-endian.
+     * The arrays are copied through memory-mapped regions of the file, each
+     * forced to disk before save() returns.
+     *
+     * @param file
+     *            the file to write; replaced if it exists
+     * @throws java.io.IOException
+     *             if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(len)
+                    .putInt(percolates ? 1 : 0).putLong(clusters)
+                    .putLong(largest);
+            header.flip();
+            while (header.hasRemaining()) {
+                ch.write(header, header.position());
+            }
+            long pos = MappedArrays.write(ch, SNAPSHOT_HEADER, open);
+            pos = MappedArrays.write(ch, pos, parent);
+            MappedArrays.write(ch, pos, status);
+            ch.force(false);
+        }
+    }
+
+    /**
+     * Restore a system from a snapshot written by save()
+     *
+     * @param file
+     *            the snapshot to read
+     * @return the system as it was when saved
+     * @throws java.io.IOException
+     *             if the file cannot be read, is not a snapshot or is
+     *             corrupt
+     */
+    public static Percolation restore(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0)
+                    throw new IOException(file + ": not a Percolation snapshot");
+            }
+            header.flip();
+            if (header.getInt() != SNAPSHOT_MAGIC)
+                throw new IOException(file + ": not a Percolation snapshot");
+            int version = header.getInt();
+            if (version != SNAPSHOT_VERSION)
+                throw new IOException(file + ": unsupported snapshot version "
+                        + version);
+            int N = header.getInt();
+            int percolates = header.getInt();
+            long clusters = header.getLong();
+            long largest = header.getLong();
+            if (N <= 0 || N > MAX_N)
+                throw new IOException(file + ": corrupt snapshot");
+            long sites = (long) N * N;
+            long size = SNAPSHOT_HEADER + 8 * ((sites + 63) >>> 6) + 5 * sites;
+            if ((percolates & ~1) != 0 || clusters < 0 || clusters > sites
+                    || largest < 0 || largest > sites || ch.size() != size)
+                throw new IOException(file + ": corrupt snapshot");
+            Percolation pr = new Percolation(N);
+            pr.percolates = percolates != 0;
+            pr.clusters = clusters;
+            pr.largest = largest;
+            long pos = MappedArrays.read(ch, SNAPSHOT_HEADER, pr.open);
+            pos = MappedArrays.read(ch, pos, pr.parent);
+            MappedArrays.read(ch, pos, pr.status);
+            return pr;
+        }
     }
 
     /**
      * Return the index at site(i, j)
-     * 
+     *
      * @return index at site(i, j)
      */
-    private int getSiteIndex(int i, int j) {
-        return len * (i - 1) + j;
+    private long getSiteIndex(int i, int j) {
+        return (long) len * (i - 1) + (j - 1);
+    }
+
+    // is the site with the given index open?
+    private boolean isOpenSite(long site) {
+        long w = site >>> 6;
+        return (open[(int) (w >>> PAGE_BITS)][(int) w & PAGE_MASK]
+                & (1L << site)) != 0;
+    }
+
+    // throw an IndexOutOfBoundsException unless 1 <= i <= N and 1 <= j <= N
+    private void validate(int i, int j) {
+        if (i <= 0 || i > len || j <= 0 || j > len)
+            throw new IndexOutOfBoundsException("site (" + i + ", " + j
+                    + ") outside 1.." + len);
+    }
+
+    // the union-find counters of this system, null unless metrics are on
+    PercolationMetrics.Counters counters() {
+        return counters;
+    }
+
+    // the parent slot of site s, as an unsigned value
+    private long parent(long s) {
+        return Integer.toUnsignedLong(
+                parent[(int) (s >>> PAGE_BITS)][(int) s & PAGE_MASK]);
+    }
+
+    private void setParent(long s, long value) {
+        parent[(int) (s >>> PAGE_BITS)][(int) s & PAGE_MASK] = (int) value;
+    }
+
+    private byte status(long s) {
+        return status[(int) (s >>> PAGE_BITS)][(int) s & PAGE_MASK];
+    }
+
+    private void setStatus(long s, byte flags) {
+        status[(int) (s >>> PAGE_BITS)][(int) s & PAGE_MASK] = flags;
+    }
+
+    // number of sites in the tree with the given root
+    private long size(long root) {
+        return parent(root) + 1;
+    }
+
+    // root of the tree containing p, halving the path on the way up
+    private long find(long p) {
+        int depth = 0; // links followed; dead code unless metrics are on
+        while ((status(p) & LINKED) != 0) {
+            long q = parent(p);
+            if ((status(q) & LINKED) != 0) {
+                long grandparent = parent(q);
+                setParent(p, grandparent);
+                p = grandparent;
+                depth += 2;
+            } else {
+                p = q;
+                depth++;
+            }
+        }
+        if (PercolationMetrics.ENABLED) counters.find(depth);
+        return p;
+    }
+
+    // merge the trees containing p and q, smaller tree under larger, and
+    // carry the TOP/BOTTOM flags over to the new root; one cluster fewer
+    private void union(long p, long q) {
+        if (PercolationMetrics.ENABLED) counters.unions++;
+        long rootP = find(p);
+        long rootQ = find(q);
+        if (rootP == rootQ) return;
+        if (size(rootP) < size(rootQ)) {
+            long t = rootP;
+            rootP = rootQ;
+            rootQ = t;
+        }
+        long size = size(rootP) + size(rootQ);
+        setStatus(rootP, (byte) (status(rootP) | status(rootQ)));
+        setParent(rootP, size - 1);
+        setParent(rootQ, rootP);
+        setStatus(rootQ, LINKED);
+        clusters--;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,226 @@
+import java.util.Arrays;
+
+/**
+ * The PercolationCurve class estimates percolation observables as functions
+ * of the site occupation probability p using the Newman-Ziff algorithm. Each
+ * experiment opens all N*N sites in random order and records the observables
+ * after every open; averaging these over T experiments and convolving with
+ * the binomial distribution gives the curve for any number of p values from a
+ * single sweep.
+ */
+public class PercolationCurve {
+    private static final byte TOP = 1; // component contains a top-row site
+    private static final byte BOTTOM = 2; // component contains a bottom-row site
+    private static final int BLOCKED = Integer.MIN_VALUE; // parent if blocked
+    private static final double NEGLIGIBLE = 1e-15; // binomial weight cutoff
+
+    private int len; // length of the grid
+    private int sites; // number of sites, N * N
+    private int numOfExperiments; // number of experiments carried out
+    private double[] spanning; // spanning[n] = P(percolates | n sites open)
+    private double[] largest; // largest[n] = mean largest cluster / sites
+    private double[] clusters; // clusters[n] = mean number of clusters / sites
+    private double[] meanSize; // meanSize[n] = mean cluster size but largest
+
+    // state of the sweep in progress
+    private int[] parent; // parent[s] = parent of s, -(tree size) if root
+    private byte[] status; // status[r] = TOP/BOTTOM flags of root r
+    private int numOfClusters; // number of clusters so far
+    private long sumOfSquares; // sum of squared cluster sizes so far
+
+    /**
+     * Perform T independent Newman-Ziff sweeps on an N-by-N grid
+     */
+    public PercolationCurve(int N, int T, long seed) {
+        if (N <= 0 || T <= 0) {
+            throw new IllegalArgumentException("N <= 0 or T <= 0");
+        }
+        if ((long) N * N > Integer.MAX_VALUE) { // the arrays are int-indexed
+            throw new IllegalArgumentException("N > 46340");
+        }
+        len = N;
+        sites = N * N;
+        numOfExperiments = T;
+        spanning = new double[sites + 1];
+        largest = new double[sites + 1];
+        clusters = new double[sites + 1];
+        meanSize = new double[sites + 1];
+
+        parent = new int[sites];
+        status = new byte[sites];
+        RandomSource master = new Xoshiro256StarStar(seed);
+        for (int expNum = 0; expNum < T; expNum++) {
+            sweep(new SiteOrder(sites, master.split()));
+        }
+
+        // spanning[n] holds how many sweeps first percolated at n opens
+        for (int n = 1; n <= sites; n++) {
+            spanning[n] += spanning[n - 1];
+        }
+        for (int n = 0; n <= sites; n++) {
+            spanning[n] /= T;
+            largest[n] /= (double) T * sites;
+            clusters[n] /= (double) T * sites;
+            meanSize[n] /= T;
+        }
+        parent = null;
+        status = null;
+    }
+
+    // open every site in the given order, adding each observable after
+    // every open to the running sums
+    private void sweep(SiteOrder order) {
+        Arrays.fill(parent, BLOCKED);
+        Arrays.fill(status, (byte) 0);
+        boolean percolates = false;
+        int maxSize = 0;
+        int maxCount = 0; // number of clusters of size maxSize
+        numOfClusters = 0;
+        sumOfSquares = 0;
+
+        for (int n = 1; n <= sites; n++) {
+            int site = order.next();
+            int row = site / len;
+            int col = site % len;
+            parent[site] = -1;
+            if (row == 0) status[site] |= TOP;
+            if (row == len - 1) status[site] |= BOTTOM;
+            numOfClusters++;
+            sumOfSquares++;
+
+            int root = site;
+            if (row > 0 && parent[site - len] != BLOCKED) {
+                root = union(root, site - len);
+            }
+            if (row < len - 1 && parent[site + len] != BLOCKED) {
+                root = union(root, site + len);
+            }
+            if (col > 0 && parent[site - 1] != BLOCKED) {
+                root = union(root, site - 1);
+            }
+            if (col < len - 1 && parent[site + 1] != BLOCKED) {
+                root = union(root, site + 1);
+            }
+
+            // only the cluster just grown can reach or pass maxSize, and if
+            // it absorbed a cluster of that size it passed it
+            int size = -parent[root];
+            if (size > maxSize) {
+                maxSize = size;
+                maxCount = 1;
+            } else if (size == maxSize) {
+                maxCount++;
+            }
+            if (!percolates && status[root] == (TOP | BOTTOM)) {
+                percolates = true;
+                spanning[n]++;
+            }
+            largest[n] += maxSize;
+            clusters[n] += numOfClusters;
+            meanSize[n] += (double) (sumOfSquares
+                    - (long) maxCount * maxSize * maxSize) / n;
+        }
+    }
+
+    // merge the tree with the given root into the tree containing q, updating
+    // the cluster aggregates; return the root of the merged tree
+    private int union(int root, int q) {
+        int rootQ = FlatUnionFind.find(parent, q);
+        if (rootQ == root) return root;
+        long sizeP = -parent[root];
+        long sizeQ = -parent[rootQ];
+        numOfClusters--;
+        sumOfSquares += 2 * sizeP * sizeQ;
+        byte flags = (byte) (status[root] | status[rootQ]);
+        root = FlatUnionFind.link(parent, root, rootQ);
+        status[root] = flags;
+        return root;
+    }
+
+    /**
+     * Probability that the system percolates when each site is open with
+     * probability p
+     */
+    public double percolationProbability(double p) {
+        return convolve(spanning, p);
+    }
+
+    /**
+     * Expected fraction of sites in the largest cluster when each site is
+     * open with probability p
+     */
+    public double largestClusterFraction(double p) {
+        return convolve(largest, p);
+    }
+
+    /**
+     * Expected number of clusters per site when each site is open with
+     * probability p
+     */
+    public double clustersPerSite(double p) {
+        return convolve(clusters, p);
+    }
+
+    /**
+     * Expected mean size of the cluster containing an open site, not counting
+     * the largest cluster, when each site is open with probability p; if
+     * several clusters tie for largest, none of them is counted
+     */
+    public double meanClusterSize(double p) {
+        return convolve(meanSize, p);
+    }
+
+    /**
+     * Number of sweeps carried out
+     */
+    public int experiments() {
+        return numOfExperiments;
+    }
+
+    // sum over n of B(sites, n, p) * q[n], walking out from the mode of the
+    // binomial until the weights become negligible
+    private double convolve(double[] q, double p) {
+        if (p < 0.0 || p > 1.0) {
+            throw new IllegalArgumentException("p outside [0, 1]");
+        }
+        if (p == 0.0) return q[0];
+        if (p == 1.0) return q[sites];
+        int mode = (int) Math.min(sites, Math.floor((sites + 1) * p));
+        double odds = p / (1.0 - p);
+        double total = 1.0;
+        double sum = q[mode];
+        double w = 1.0;
+        for (int n = mode; n < sites && w > NEGLIGIBLE * total; n++) {
+            w *= odds * (sites - n) / (n + 1);
+            total += w;
+            sum += w * q[n + 1];
+        }
+        w = 1.0;
+        for (int n = mode; n > 0 && w > NEGLIGIBLE * total; n--) {
+            w *= n / (odds * (sites - n + 1));
+            total += w;
+            sum += w * q[n - 1];
+        }
+        return sum / total;
+    }
+
+    public static void main(String[] args) {
+        int N = Integer.parseInt(args[0]);
+        int T = Integer.parseInt(args[1]);
+        int points = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long seed = args.length > 3 ? Long.parseLong(args[3])
+                : System.nanoTime();
+        PercolationCurve curve = new PercolationCurve(N, T, seed);
+
+        // the seed first, so a run from the clock can be repeated
+        StdOut.println("# seed " + seed);
+        StdOut.println("p\tP(p)\tlargest\tclusters\tmeanSize");
+        for (int k = 0; k <= points; k++) {
+            double p = (double) k / points;
+            StdOut.println(p + "\t" + curve.percolationProbability(p) + "\t"
+                    + curve.largestClusterFraction(p) + "\t"
+                    + curve.clustersPerSite(p) + "\t"
+                    + curve.meanClusterSize(p));
+        }
+    }
+}
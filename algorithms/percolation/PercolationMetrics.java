@@ -0,0 +1,248 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The PercolationMetrics class collects opt-in counters for the union-find of
+ * Percolation and the experiments of PercolationStats: unions, finds and
+ * their depths, sites drawn that were already open, and experiment wall time
+ * and its distribution. They are off unless the JVM is started with
+ * -Dpercolation.metrics=true.
+ *
+ * ENABLED is a static final constant, so with metrics off the JIT folds every
+ * "if (PercolationMetrics.ENABLED)" in the hot paths away and they cost
+ * nothing. With metrics on, a Percolation counts into its own Counters with
+ * plain field updates, and the totals are published once per experiment: to
+ * the JMX MBean percolation:type=PercolationMetrics, and as a JFR event
+ * percolation.Experiment when a flight recording is running.
+ */
+public class PercolationMetrics implements PercolationMetricsMBean {
+    /** whether metrics are collected, from -Dpercolation.metrics */
+    public static final boolean ENABLED = Boolean.getBoolean(
+            "percolation.metrics");
+    /** number of find-depth bins; the last holds every deeper find */
+    public static final int DEPTH_BINS = 32;
+    /**
+     * number of experiment-time bins, doubling from a microsecond; the last
+     * holds every longer experiment
+     */
+    public static final int TIME_BINS = 40;
+
+    private static final PercolationMetrics INSTANCE = new PercolationMetrics();
+
+    private final LongAdder experiments = new LongAdder();
+    private final LongAdder unions = new LongAdder();
+    private final LongAdder finds = new LongAdder();
+    private final LongAdder findDepth = new LongAdder(); // links followed
+    private final AtomicLongArray depths = new AtomicLongArray(DEPTH_BINS);
+    private final LongAdder wastedDraws = new LongAdder();
+    private final LongAdder experimentNanos = new LongAdder();
+    private final AtomicLong maxExperimentNanos = new AtomicLong();
+    private final AtomicLongArray times = new AtomicLongArray(TIME_BINS);
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        INSTANCE, new ObjectName(
+                                "percolation:type=PercolationMetrics"));
+            } catch (InstanceAlreadyExistsException e) {
+                // loaded again by another class loader; keep the first
+            } catch (JMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private PercolationMetrics() { }
+
+    /**
+     * Returns the process-wide metrics
+     *
+     * @return the metrics registered with JMX
+     */
+    public static PercolationMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * The union-find counters of one Percolation. Not thread-safe: each
+     * Percolation has its own, folded into the totals by its experiment.
+     */
+    static final class Counters {
+        long unions; // union calls
+        long finds; // find calls
+        long findDepth; // parent links followed by all finds
+        final long[] depths = new long[DEPTH_BINS]; // finds by depth
+
+        // count a find that followed the given number of links
+        void find(int depth) {
+            finds++;
+            findDepth += depth;
+            depths[Math.min(depth, DEPTH_BINS - 1)]++;
+        }
+    }
+
+    /**
+     * The JFR event recorded for each experiment; its duration is the
+     * experiment's wall time
+     */
+    @Name("percolation.Experiment")
+    @Label("Percolation Experiment")
+    @Category("Percolation")
+    @Description("One PercolationStats experiment, from blocked grid to "
+            + "percolation")
+    static final class ExperimentEvent extends Event {
+        @Label("Grid Size")
+        int gridSize;
+
+        @Label("Sampling")
+        String sampling;
+
+        @Label("Threshold")
+        @Description("Fraction of sites open when the system percolated")
+        double threshold;
+
+        @Label("Unions")
+        long unions;
+
+        @Label("Finds")
+        long finds;
+
+        @Label("Mean Find Depth")
+        double meanFindDepth;
+
+        @Label("Wasted Draws")
+        @Description("Sites drawn that were already open")
+        long wastedDraws;
+
+        transient long startNanos; // System.nanoTime() at begin, not recorded
+    }
+
+    /**
+     * Starts timing an experiment; call only when ENABLED
+     *
+     * @return the event to hand to finish()
+     */
+    static ExperimentEvent start(int N, PercolationStats.Sampling sampling) {
+        ExperimentEvent event = new ExperimentEvent();
+        event.gridSize = N;
+        event.sampling = sampling.name();
+        event.startNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Adds a finished experiment to the totals and commits its event
+     */
+    static void finish(ExperimentEvent event, Counters counters,
+            double threshold, long wasted) {
+        event.end();
+        long nanos = System.nanoTime() - event.startNanos;
+        INSTANCE.experiments.increment();
+        INSTANCE.unions.add(counters.unions);
+        INSTANCE.finds.add(counters.finds);
+        INSTANCE.findDepth.add(counters.findDepth);
+        for (int d = 0; d < DEPTH_BINS; d++) {
+            if (counters.depths[d] != 0) {
+                INSTANCE.depths.addAndGet(d, counters.depths[d]);
+            }
+        }
+        INSTANCE.wastedDraws.add(wasted);
+        INSTANCE.experimentNanos.add(nanos);
+        INSTANCE.maxExperimentNanos.accumulateAndGet(nanos, Math::max);
+        INSTANCE.times.incrementAndGet(timeBin(nanos));
+
+        if (event.shouldCommit()) {
+            event.threshold = threshold;
+            event.unions = counters.unions;
+            event.finds = counters.finds;
+            event.meanFindDepth = counters.finds == 0 ? 0.0
+                    : (double) counters.findDepth / counters.finds;
+            event.wastedDraws = wasted;
+            event.commit();
+        }
+    }
+
+    // the experiment-time bin of a wall time: floor(log2(microseconds)),
+    // below a microsecond in bin 0 and clamped to the last bin
+    private static int timeBin(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(63 - Long.numberOfLeadingZeros(micros | 1),
+                TIME_BINS - 1);
+    }
+
+    public long getExperiments() {
+        return experiments.sum();
+    }
+
+    public long getUnions() {
+        return unions.sum();
+    }
+
+    public long getFinds() {
+        return finds.sum();
+    }
+
+    public double getMeanFindDepth() {
+        long n = finds.sum();
+        return n == 0 ? 0.0 : (double) findDepth.sum() / n;
+    }
+
+    public long[] getFindDepthHistogram() {
+        long[] result = new long[DEPTH_BINS];
+        for (int d = 0; d < DEPTH_BINS; d++) {
+            result[d] = depths.get(d);
+        }
+        return result;
+    }
+
+    public long getWastedDraws() {
+        return wastedDraws.sum();
+    }
+
+    public double getMeanExperimentMillis() {
+        long n = experiments.sum();
+        return n == 0 ? 0.0 : experimentNanos.sum() / 1e6 / n;
+    }
+
+    public double getMaxExperimentMillis() {
+        return maxExperimentNanos.get() / 1e6;
+    }
+
+    public long[] getExperimentTimeHistogram() {
+        long[] result = new long[TIME_BINS];
+        for (int b = 0; b < TIME_BINS; b++) {
+            result[b] = times.get(b);
+        }
+        return result;
+    }
+
+    public void reset() {
+        experiments.reset();
+        unions.reset();
+        finds.reset();
+        findDepth.reset();
+        for (int d = 0; d < DEPTH_BINS; d++) {
+            depths.set(d, 0);
+        }
+        wastedDraws.reset();
+        experimentNanos.reset();
+        maxExperimentNanos.set(0);
+        for (int b = 0; b < TIME_BINS; b++) {
+            times.set(b, 0);
+        }
+    }
+}
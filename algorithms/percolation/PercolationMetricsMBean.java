@@ -0,0 +1,42 @@
+/**
+ * The management interface of PercolationMetrics, registered as
+ * percolation:type=PercolationMetrics when metrics are enabled.
+ */
+public interface PercolationMetricsMBean {
+    /** number of experiments finished */
+    long getExperiments();
+
+    /** number of union calls made by the experiments' Percolations */
+    long getUnions();
+
+    /** number of find calls made by the experiments' Percolations */
+    long getFinds();
+
+    /** mean number of parent links followed by a find */
+    double getMeanFindDepth();
+
+    /**
+     * finds by number of parent links followed: element d counts finds of
+     * depth d, the last element those of depth at least its index
+     */
+    long[] getFindDepthHistogram();
+
+    /** number of sites drawn that were already open */
+    long getWastedDraws();
+
+    /** mean wall time of an experiment in milliseconds */
+    double getMeanExperimentMillis();
+
+    /** longest wall time of an experiment in milliseconds */
+    double getMaxExperimentMillis();
+
+    /**
+     * experiments by wall time: element b counts those of 2^b to
+     * 2^(b + 1) - 1 microseconds, element 0 also those under a microsecond
+     * and the last element all longer ones
+     */
+    long[] getExperimentTimeHistogram();
+
+    /** sets every counter back to zero */
+    void reset();
+}
@@ -1,51 +1,575 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
  * The PercolationStats class uses Monte Carlo simulation to estimate the
  * percolation threshold
- * 
+ *
  * @author Shuai Wang
  *
  */
 public class PercolationStats {
+    // experiments run back to back on one random stream in a leaf task
+    private static final int EXPERIMENTS_PER_TASK = 8;
+    // fewest experiments in a batch of an adaptive run; fixed, like the
+    // stopping rule it feeds, so a seed gives the same run on any machine
+    private static final int ADAPTIVE_BATCH = 64;
+    // most experiments in a batch of a checkpointed run; fixed, so that the
+    // batches do not depend on the number of threads
+    private static final int CHECKPOINT_BATCH = 256;
+    private static final int CHECKPOINT_MAGIC = 0x50535441; // "PSTA"
+    private static final int CHECKPOINT_VERSION = 2;
+    private static final int CHECKPOINT_HEADER = 48;
+    private static final int CHECKPOINT_NODE = 32; // bytes per saved subtree
+
+    /**
+     * How an experiment picks the next site to open
+     */
+    public enum Sampling {
+        /**
+         * walk a random permutation of the sites, one draw per open; the
+         * permutation is int-indexed, so N is at most 46340
+         */
+        PERMUTATION,
+        /** draw random (row, col) pairs, retrying on already-open sites */
+        REJECTION
+    }
+
     private int numOfExperiments; // number of experiment carried outs
-    private double[] fractions; // an array storing fraction of each percolation
+    private RunningStats stats; // mean and variance of the fractions
+    private ThresholdHistogram histogram; // distribution of the fractions
 
     /**
      * Perform T independent experiments on an N-by-N grid
      */
     public PercolationStats(int N, int T) {
+        this(N, T, randomSeed(), 1);
+    }
+
+    /**
+     * Perform T independent experiments on an N-by-N grid using the given
+     * number of worker threads. Each block of experiments draws from its own
+     * stream split off the master seed in an order that depends only on T,
+     * and partial statistics are merged along the same fixed tree, so the
+     * results are identical for every choice of parallelism.
+     */
+    public PercolationStats(int N, int T, long seed, int parallelism) {
+        this(N, T, seed, parallelism, Sampling.PERMUTATION);
+    }
+
+    /**
+     * Perform T independent experiments on an N-by-N grid, as above, choosing
+     * the sites to open with the given sampling strategy
+     */
+    public PercolationStats(int N, int T, long seed, int parallelism,
+            Sampling sampling) {
+        this(N, T, new Xoshiro256StarStar(seed), parallelism, sampling);
+    }
+
+    /**
+     * Perform T independent experiments on an N-by-N grid, as above, drawing
+     * every experiment's stream from the given master source by split()
+     */
+    public PercolationStats(int N, int T, RandomSource random,
+            int parallelism, Sampling sampling) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism <= 0");
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            runAll(pool, N, T, random, sampling);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // as above, but on the given pool, which is left running; for callers
+    // such as the benchmarks that time many runs and reuse one pool
+    PercolationStats(int N, int T, RandomSource random, ForkJoinPool pool,
+            Sampling sampling) {
+        if (pool == null) {
+            throw new NullPointerException("Null pool");
+        }
+        runAll(pool, N, T, random, sampling);
+    }
+
+    // run all T experiments as one tree of tasks on the pool
+    private void runAll(ForkJoinPool pool, int N, int T, RandomSource random,
+            Sampling sampling) {
         if (N <= 0 || T <= 0) {
             throw new IllegalArgumentException("N <= 0 or T <= 0");
         }
+        if (sampling == null || random == null) {
+            throw new NullPointerException("Null sampling or random");
+        }
+        checkSampling(N, sampling);
         numOfExperiments = T;
-        fractions = new double[numOfExperiments];
-        for (int expNum = 0; expNum < numOfExperiments; expNum++) {
-            Percolation pr = new Percolation(N);
-            int openedSite = 0;
+        histogram = new ThresholdHistogram();
+        stats = pool.invoke(new Experiments(N, sampling, 0, T, random));
+    }
+
+    // an empty instance for adaptive() to fill
+    private PercolationStats() {
+        stats = new RunningStats();
+        histogram = new ThresholdHistogram();
+    }
+
+    /**
+     * Perform experiments on an N-by-N grid in batches until the half-width
+     * of the 95% confidence interval drops to epsilon, maxExperiments have
+     * been run, or maxMillis have elapsed, whichever comes first. Batches run
+     * on the given number of worker threads; each batch draws its random
+     * stream from the master seed in batch order and its statistics are
+     * merged into the total in batch order. Batch sizes depend only on the
+     * statistics so far, never on parallelism, so unless maxMillis cuts it
+     * short a seeded run does the same experiments on any machine. The
+     * number of experiments actually run is available from experiments().
+     *
+     * @return the statistics of all experiments run
+     */
+    public static PercolationStats adaptive(int N, double epsilon,
+            int maxExperiments, long maxMillis, long seed, int parallelism) {
+        return adaptive(N, epsilon, maxExperiments, maxMillis, seed,
+                parallelism, Sampling.PERMUTATION);
+    }
+
+    /**
+     * As above, choosing the sites to open with the given sampling strategy
+     *
+     * @return the statistics of all experiments run
+     */
+    public static PercolationStats adaptive(int N, double epsilon,
+            int maxExperiments, long maxMillis, long seed, int parallelism,
+            Sampling sampling) {
+        if (N <= 0 || maxExperiments <= 0) {
+            throw new IllegalArgumentException("N <= 0 or maxExperiments <= 0");
+        }
+        if (!(epsilon > 0) || maxMillis < 0 || parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "epsilon <= 0, maxMillis < 0 or parallelism <= 0");
+        }
+        if (sampling == null) {
+            throw new NullPointerException("Null sampling");
+        }
+        checkSampling(N, sampling);
+        // a budget too long to count in nanoseconds is no limit at all
+        long budget = maxMillis >= Long.MAX_VALUE / 1000000L ? Long.MAX_VALUE
+                : maxMillis * 1000000L;
+        // compared by subtraction, so it works even if the sum wraps
+        long deadline = System.nanoTime() + budget;
+        RandomSource master = new Xoshiro256StarStar(seed);
+        PercolationStats result = new PercolationStats();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int batch = Math.min(ADAPTIVE_BATCH, maxExperiments);
+            while (true) {
+                result.runBatch(pool, N, sampling, batch, master.split());
+                int done = result.numOfExperiments;
+
+                if (done >= maxExperiments
+                        || System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+                if (done < 2) {
+                    batch = Math.min(ADAPTIVE_BATCH, maxExperiments - done);
+                    continue;
+                }
+                double halfWidth = 1.96 * result.stddev() / Math.sqrt(done);
+                if (halfWidth <= epsilon) {
+                    break;
+                }
+                // aim for the estimated total, growing at most twofold
+                double needed = Math.ceil(Math.pow(halfWidth / epsilon, 2)
+                        * done);
+                batch = (int) Math.min(needed - done, done);
+                batch = Math.max(batch, ADAPTIVE_BATCH);
+                batch = Math.min(batch, maxExperiments - done);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * Perform T experiments on an N-by-N grid exactly as the five-argument
+     * constructor does, but in batches: each batch is a subtree of the
+     * constructor's tree of tasks holding at most CHECKPOINT_BATCH
+     * experiments, and finished subtrees are merged along that tree, so the
+     * results equal the constructor's for every choice of parallelism. The
+     * statistics so far are saved to the checkpoint file whenever
+     * intervalMillis have passed since the last save and once more at the
+     * end. A run interrupted at any point can be continued with resume(),
+     * again with the same results.
+     *
+     * @return the statistics of all T experiments
+     * @throws java.io.IOException
+     *             if the checkpoint cannot be written
+     */
+    public static PercolationStats checkpointed(int N, int T, long seed,
+            int parallelism, Sampling sampling, Path checkpoint,
+            long intervalMillis) throws IOException {
+        if (N <= 0 || T <= 0) {
+            throw new IllegalArgumentException("N <= 0 or T <= 0");
+        }
+        if (parallelism <= 0 || intervalMillis < 0) {
+            throw new IllegalArgumentException(
+                    "parallelism <= 0 or intervalMillis < 0");
+        }
+        if (sampling == null) {
+            throw new NullPointerException("Null sampling");
+        }
+        checkSampling(N, sampling);
+        Job job = new Job();
+        job.N = N;
+        job.T = T;
+        job.seed = seed;
+        job.sampling = sampling;
+        job.intervalMillis = intervalMillis;
+        return run(job, new PercolationStats(), parallelism, checkpoint);
+    }
+
+    /**
+     * Continue a run started by checkpointed() from its checkpoint file,
+     * using the given number of worker threads
+     *
+     * @return the statistics of all T experiments of the run
+     * @throws java.io.IOException
+     *             if the checkpoint cannot be read or written, or is corrupt
+     */
+    public static PercolationStats resume(Path checkpoint, int parallelism)
+            throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism <= 0");
+        }
+        Job job = new Job();
+        PercolationStats result = new PercolationStats();
+        try (FileChannel ch = FileChannel.open(checkpoint,
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(CHECKPOINT_HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0)
+                    throw new IOException(checkpoint + ": not a checkpoint");
+            }
+            header.flip();
+            if (header.getInt() != CHECKPOINT_MAGIC)
+                throw new IOException(checkpoint + ": not a checkpoint");
+            int version = header.getInt();
+            if (version != CHECKPOINT_VERSION)
+                throw new IOException(checkpoint
+                        + ": unsupported checkpoint version " + version);
+            job.N = header.getInt();
+            job.T = header.getInt();
+            int sampling = header.getInt();
+            result.numOfExperiments = header.getInt();
+            job.intervalMillis = header.getLong();
+            job.seed = header.getLong();
+            int bins = header.getInt();
+            int nodes = header.getInt();
+            if (job.N <= 0 || job.N > Percolation.MAX_N || job.T <= 0
+                    || sampling < 0 || sampling >= Sampling.values().length
+                    || result.numOfExperiments < 0
+                    || result.numOfExperiments > job.T
+                    || job.intervalMillis < 0 || bins <= 0 || nodes < 0
+                    || ch.size() != CHECKPOINT_HEADER + 8L * bins
+                            + (long) nodes * CHECKPOINT_NODE)
+                throw new IOException(checkpoint + ": corrupt checkpoint");
+            job.sampling = Sampling.values()[sampling];
+            if (job.sampling == Sampling.PERMUTATION
+                    && (long) job.N * job.N > Integer.MAX_VALUE)
+                throw new IOException(checkpoint + ": corrupt checkpoint");
+            ByteBuffer body = ByteBuffer.allocate(8 * bins
+                    + nodes * CHECKPOINT_NODE);
+            body.order(ByteOrder.LITTLE_ENDIAN);
+            while (body.hasRemaining()) {
+                if (ch.read(body, CHECKPOINT_HEADER + body.position()) < 0)
+                    throw new IOException(checkpoint + ": truncated");
+            }
+            body.flip();
+            result.histogram = new ThresholdHistogram(bins);
+            for (int b = 0; b < bins; b++) {
+                long count = body.getLong();
+                if (count < 0)
+                    throw new IOException(checkpoint + ": corrupt checkpoint");
+                result.histogram.setCount(b, count);
+            }
+            // the saved subtrees are disjoint, left to right, and cover
+            // exactly the experiments done
+            int end = 0;
+            long done = 0;
+            for (int k = 0; k < nodes; k++) {
+                int lo = body.getInt();
+                int hi = body.getInt();
+                long count = body.getLong();
+                if (lo < end || hi <= lo || hi > job.T || count != hi - lo)
+                    throw new IOException(checkpoint + ": corrupt checkpoint");
+                end = hi;
+                done += count;
+                job.saved.addLast(new Node(lo, hi, new RunningStats(
+                        count, body.getDouble(), body.getDouble())));
+            }
+            if (done != result.numOfExperiments)
+                throw new IOException(checkpoint + ": corrupt checkpoint");
+        }
+        return run(job, result, parallelism, checkpoint);
+    }
+
+    // the parameters and progress of a checkpointed run
+    private static class Job {
+        int N; // grid size
+        int T; // number of experiments to run
+        long seed; // master seed
+        Sampling sampling; // site sampling strategy
+        long intervalMillis; // minimum time between checkpoints
+        long lastSave; // System.nanoTime() of the last checkpoint
+        // finished subtrees read from the checkpoint and not yet reached,
+        // left to right
+        ArrayDeque<Node> saved = new ArrayDeque<Node>();
+        // finished subtrees whose parent is not finished, left to right
+        ArrayList<Node> finished = new ArrayList<Node>();
+    }
+
+    // the statistics of experiments [lo, hi), a subtree of the task tree
+    private static class Node {
+        final int lo;
+        final int hi;
+        final RunningStats stats;
+
+        Node(int lo, int hi, RunningStats stats) {
+            this.lo = lo;
+            this.hi = hi;
+            this.stats = stats;
+        }
+    }
+
+    // run the unfinished batches of a job into result, checkpointing as due
+    private static PercolationStats run(Job job, PercolationStats result,
+            int parallelism, Path checkpoint) throws IOException {
+        job.lastSave = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            result.runTree(pool, job, 0, job.T,
+                    new Xoshiro256StarStar(job.seed), checkpoint);
+        } finally {
+            pool.shutdown();
+        }
+        if (!job.saved.isEmpty() || job.finished.size() != 1)
+            throw new IOException(checkpoint + ": does not match its run");
+        result.stats = job.finished.get(0).stats;
+        result.saveCheckpoint(job, checkpoint);
+        return result;
+    }
+
+    // finish experiments [lo, hi) of the constructor's task tree, splitting
+    // the random stream as Experiments does but running a whole batch at a
+    // time once at most CHECKPOINT_BATCH remain; leaves their statistics as
+    // the last entry of job.finished
+    private void runTree(ForkJoinPool pool, Job job, int lo, int hi,
+            RandomSource random, Path checkpoint) throws IOException {
+        Node next = job.saved.peekFirst();
+        if (next != null && next.lo == lo && next.hi == hi) {
+            job.finished.add(job.saved.pollFirst());
+            return;
+        }
+        if (hi - lo <= CHECKPOINT_BATCH) {
+            RunningStats batch = pool.invoke(new Experiments(job.N,
+                    job.sampling, lo, hi, random));
+            job.finished.add(new Node(lo, hi, batch));
+            numOfExperiments += hi - lo;
+            if (System.nanoTime() - job.lastSave
+                    >= job.intervalMillis * 1000000L) {
+                saveCheckpoint(job, checkpoint);
+                job.lastSave = System.nanoTime();
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        RandomSource rightRandom = random.split();
+        runTree(pool, job, lo, mid, random, checkpoint);
+        runTree(pool, job, mid, hi, rightRandom, checkpoint);
+        Node right = job.finished.remove(job.finished.size() - 1);
+        Node left = job.finished.remove(job.finished.size() - 1);
+        left.stats.merge(right.stats);
+        job.finished.add(new Node(lo, hi, left.stats));
+    }
+
+    // write the job and statistics to a temporary file, force it to disk,
+    // then move it over the checkpoint so that a crash never leaves a
+    // half-written checkpoint; the file is a few KB, so it is written with
+    // plain channel writes, which force() covers, rather than a mapping
+    private void saveCheckpoint(Job job, Path checkpoint) throws IOException {
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        int bins = histogram.bins();
+        ByteBuffer buf = ByteBuffer.allocate(CHECKPOINT_HEADER + 8 * bins
+                + job.finished.size() * CHECKPOINT_NODE);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(CHECKPOINT_MAGIC).putInt(CHECKPOINT_VERSION)
+                .putInt(job.N).putInt(job.T).putInt(job.sampling.ordinal())
+                .putInt(numOfExperiments).putLong(job.intervalMillis)
+                .putLong(job.seed).putInt(bins).putInt(job.finished.size());
+        for (int b = 0; b < bins; b++) {
+            buf.putLong(histogram.count(b));
+        }
+        for (Node node : job.finished) {
+            buf.putInt(node.lo).putInt(node.hi).putLong(node.stats.count())
+                    .putDouble(node.stats.mean()).putDouble(node.stats.m2());
+        }
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf, buf.position());
+            }
+            ch.force(false);
+        }
+        Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // run the next batch of experiments and merge its statistics
+    private void runBatch(ForkJoinPool pool, int N, Sampling sampling,
+            int batch, RandomSource random) {
+        int done = numOfExperiments;
+        stats.merge(pool.invoke(new Experiments(N, sampling, done,
+                done + batch, random)));
+        numOfExperiments = done + batch;
+    }
+
+    // a master seed taken from StdRandom, so StdRandom.setSeed still applies
+    private static long randomSeed() {
+        long hi = StdRandom.uniform(Integer.MAX_VALUE);
+        long lo = StdRandom.uniform(Integer.MAX_VALUE);
+        return (hi << 31) ^ lo;
+    }
+
+    // throw unless the sampling strategy can walk an N-by-N grid
+    private static void checkSampling(int N, Sampling sampling) {
+        if (sampling == Sampling.PERMUTATION
+                && (long) N * N > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "N > 46340 needs REJECTION sampling");
+        }
+    }
+
+    // open random sites until the system percolates; return the open fraction
+    private static double experiment(int N, Sampling sampling,
+            RandomSource random) {
+        PercolationMetrics.ExperimentEvent event = null;
+        if (PercolationMetrics.ENABLED) {
+            event = PercolationMetrics.start(N, sampling);
+        }
+        Percolation pr = new Percolation(N);
+        long openedSite = 0;
+        long wasted = 0; // draws of sites already open
+        if (sampling == Sampling.PERMUTATION) {
+            SiteOrder order = new SiteOrder(N * N, random);
+            while (!pr.percolates()) {
+                int site = order.next();
+                pr.open(site / N + 1, site % N + 1);
+                openedSite++;
+            }
+        } else {
             while (!pr.percolates()) {
-                int row = StdRandom.uniform(1, N+1);
-                int col = StdRandom.uniform(1, N+1);
+                int row = random.uniform(1, N + 1);
+                int col = random.uniform(1, N + 1);
                 if (!pr.isOpen(row, col)) {
                     pr.open(row, col);
                     openedSite++;
+                } else {
+                    wasted++;
                 }
             }
-            double fraction = (double) openedSite / (N * N);
-            fractions[expNum] = fraction;
         }
+        double fraction = (double) openedSite / ((double) N * N);
+        if (PercolationMetrics.ENABLED) {
+            PercolationMetrics.finish(event, pr.counters(), fraction, wasted);
+        }
+        return fraction;
+    }
+
+    // runs experiments [lo, hi), halving the range and splitting the random
+    // stream until at most EXPERIMENTS_PER_TASK remain; returns the left
+    // half's statistics merged with the right half's
+    private class Experiments extends RecursiveTask<RunningStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final int N;
+        private final Sampling sampling;
+        private final int lo;
+        private final int hi;
+        private final RandomSource random;
+
+        Experiments(int N, Sampling sampling, int lo, int hi,
+                RandomSource random) {
+            this.N = N;
+            this.sampling = sampling;
+            this.lo = lo;
+            this.hi = hi;
+            this.random = random;
+        }
+
+        protected RunningStats compute() {
+            if (hi - lo <= EXPERIMENTS_PER_TASK) {
+                RunningStats leaf = new RunningStats();
+                for (int expNum = lo; expNum < hi; expNum++) {
+                    double fraction = experiment(N, sampling, random);
+                    leaf.add(fraction);
+                    histogram.add(fraction);
+                }
+                return leaf;
+            }
+            int mid = (lo + hi) >>> 1;
+            RandomSource rightRandom = random.split();
+            Experiments left = new Experiments(N, sampling, lo, mid, random);
+            Experiments right = new Experiments(N, sampling, mid, hi,
+                    rightRandom);
+            right.fork();
+            RunningStats merged = left.compute();
+            merged.merge(right.join());
+            return merged;
+        }
+    }
+
+    /**
+     * Number of experiments carried out
+     */
+    public int experiments() {
+        return numOfExperiments;
     }
 
     /**
      * Sample mean of percolation threshold
      */
     public double mean() {
-        return StdStats.mean(fractions);
+        return stats.mean();
     }
 
     /**
      * Sample standard deviation of percolation threshold
      */
     public double stddev() {
-        return StdStats.stddev(fractions);
+        return stats.stddev();
+    }
+
+    /**
+     * Approximate q-quantile of percolation threshold, accurate to within
+     * 1 / ThresholdHistogram.DEFAULT_BINS
+     */
+    public double quantile(double q) {
+        return histogram.quantile(q);
     }
 
     /**
@@ -63,15 +587,70 @@ public class PercolationStats {
 
     }
 
-    public static void main(String[] args) {
-        int N = Integer.parseInt(args[0]);
-        int T = Integer.parseInt(args[1]);
-        PercolationStats pStats = new PercolationStats(N, T);
+    public static void main(String[] args) throws IOException {
+        PercolationStats pStats;
+        if (args[0].equals("-adaptive")) {
+            // -adaptive N epsilon maxT maxSeconds [seed [threads]]
+            int N = Integer.parseInt(args[1]);
+            double epsilon = Double.parseDouble(args[2]);
+            int maxT = Integer.parseInt(args[3]);
+            long maxMillis = (long) (Double.parseDouble(args[4]) * 1000);
+            long seed = args.length > 5 ? Long.parseLong(args[5])
+                    : randomSeed();
+            int threads = args.length > 6 ? Integer.parseInt(args[6])
+                    : Runtime.getRuntime().availableProcessors();
+            pStats = adaptive(N, epsilon, maxT, maxMillis, seed, threads);
+        } else if (args[0].equals("-checkpoint")) {
+            // -checkpoint file N T [seed [threads [intervalSeconds]]]
+            Path file = Paths.get(args[1]);
+            int N = Integer.parseInt(args[2]);
+            int T = Integer.parseInt(args[3]);
+            long seed = args.length > 4 ? Long.parseLong(args[4])
+                    : randomSeed();
+            int threads = args.length > 5 ? Integer.parseInt(args[5])
+                    : Runtime.getRuntime().availableProcessors();
+            long intervalMillis = args.length > 6
+                    ? (long) (Double.parseDouble(args[6]) * 1000) : 60000;
+            pStats = checkpointed(N, T, seed, threads, Sampling.PERMUTATION,
+                    file, intervalMillis);
+        } else if (args[0].equals("-resume")) {
+            // -resume file [threads]
+            int threads = args.length > 2 ? Integer.parseInt(args[2])
+                    : Runtime.getRuntime().availableProcessors();
+            pStats = resume(Paths.get(args[1]), threads);
+        } else {
+            int N = Integer.parseInt(args[0]);
+            int T = Integer.parseInt(args[1]);
+            if (args.length > 2) {
+                long seed = Long.parseLong(args[2]);
+                int threads = args.length > 3 ? Integer.parseInt(args[3])
+                        : Runtime.getRuntime().availableProcessors();
+                Sampling sampling = args.length > 4
+                        ? Sampling.valueOf(args[4].toUpperCase())
+                        : Sampling.PERMUTATION;
+                pStats = new PercolationStats(N, T, seed, threads, sampling);
+            } else {
+                pStats = new PercolationStats(N, T);
+            }
+        }
 
         String confidence = pStats.confidenceLo() + ", "
                 + pStats.confidenceHi();
+        StdOut.println("experiments             = " + pStats.experiments());
         StdOut.println("mean                    = " + pStats.mean());
         StdOut.println("stddev                  = " + pStats.stddev());
+        StdOut.println("median                  = " + pStats.quantile(0.5));
         StdOut.println("95% confidence interval = " + confidence);
+        if (PercolationMetrics.ENABLED) {
+            PercolationMetrics m = PercolationMetrics.get();
+            StdOut.println("unions per experiment   = "
+                    + (double) m.getUnions() / m.getExperiments());
+            StdOut.println("finds per experiment    = "
+                    + (double) m.getFinds() / m.getExperiments());
+            StdOut.println("mean find depth         = " + m.getMeanFindDepth());
+            StdOut.println("wasted draws            = " + m.getWastedDraws());
+            StdOut.println("mean experiment ms      = "
+                    + m.getMeanExperimentMillis());
+        }
     }
 }
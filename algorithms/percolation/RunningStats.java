@@ -0,0 +1,113 @@
+/**
+ * The RunningStats class accumulates the count, mean and variance of a stream
+ * of values in constant space using Welford's update. Two accumulators can be
+ * merged, so partial results from different threads combine into the same
+ * summary as one sequential pass (up to rounding, which is fixed for a fixed
+ * order of merges).
+ */
+public class RunningStats {
+    private long count; // number of values added
+    private double mean; // mean of the values added
+    private double m2; // sum of squared deviations from the mean
+
+    /**
+     * Initializes an empty accumulator
+     */
+    public RunningStats() {
+        count = 0;
+        mean = 0.0;
+        m2 = 0.0;
+    }
+
+    /**
+     * Initializes an accumulator with a previously saved state
+     */
+    public RunningStats(long count, double mean, double m2) {
+        if (count < 0) throw new IllegalArgumentException("count < 0");
+        this.count = count;
+        this.mean = mean;
+        this.m2 = m2;
+    }
+
+    /**
+     * Adds a value
+     *
+     * @param x
+     *            the value to add
+     */
+    public void add(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+    }
+
+    /**
+     * Adds all values summarized by that accumulator to this one
+     *
+     * @param that
+     *            the accumulator to merge; left unchanged
+     */
+    public void merge(RunningStats that) {
+        if (that.count == 0) return;
+        if (count == 0) {
+            count = that.count;
+            mean = that.mean;
+            m2 = that.m2;
+            return;
+        }
+        long n = count + that.count;
+        double delta = that.mean - mean;
+        mean += delta * that.count / n;
+        m2 += that.m2 + delta * delta * ((double) count * that.count / n);
+        count = n;
+    }
+
+    /**
+     * Returns the number of values added
+     *
+     * @return the number of values added
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the sample mean, or NaN if no values were added
+     *
+     * @return the sample mean
+     */
+    public double mean() {
+        if (count == 0) return Double.NaN;
+        return mean;
+    }
+
+    /**
+     * Returns the sum of squared deviations from the mean
+     *
+     * @return the sum of squared deviations from the mean
+     */
+    public double m2() {
+        return m2;
+    }
+
+    /**
+     * Returns the sample variance, or NaN if fewer than two values were added
+     *
+     * @return the sample variance
+     */
+    public double var() {
+        if (count < 2) return Double.NaN;
+        return m2 / (count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation, or NaN if fewer than two values
+     * were added
+     *
+     * @return the sample standard deviation
+     */
+    public double stddev() {
+        return Math.sqrt(var());
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.NoSuchElementException;
+
+/**
+ * The SiteOrder class produces the sites 0 to n-1 in uniformly random order,
+ * one at a time, by running Fisher-Yates incrementally over a lazily
+ * initialized permutation: each call to next() costs one random draw and
+ * never returns a site twice.
+ */
+public class SiteOrder {
+    private int[] perm; // perm[k] = 1 + site at position k, or 0 if still k
+    private int remaining; // positions [0, remaining) are not yet drawn
+    private RandomSource random; // source of the shuffle
+
+    /**
+     * Create an ordering of the sites 0 to n-1
+     */
+    public SiteOrder(int n, RandomSource random) {
+        if (n < 0) throw new IllegalArgumentException("n < 0");
+        if (random == null) throw new NullPointerException("Null random");
+        perm = new int[n];
+        remaining = n;
+        this.random = random;
+    }
+
+    /**
+     * Are there sites left to draw?
+     *
+     * @return true if next() will return another site; false otherwise
+     */
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    /**
+     * Returns the next site in the random order
+     *
+     * @return a site that has not been returned before
+     */
+    public int next() {
+        if (!hasNext())
+            throw new NoSuchElementException("All sites drawn");
+        int pos = random.uniform(remaining);
+        int last = --remaining;
+        int site = at(pos);
+        perm[pos] = at(last) + 1;
+        return site;
+    }
+
+    // the site currently stored at position k
+    private int at(int k) {
+        int v = perm[k];
+        return v == 0 ? k : v - 1;
+    }
+}
@@ -0,0 +1,313 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The StreamingPercolation class checks a grid for percolation one row at a
+ * time with the Hoshen-Kopelman algorithm. Only the labels of the previous
+ * and current row are kept, and cluster labels are renumbered after every
+ * row, so memory is proportional to the width of the grid however many rows
+ * are streamed through it. The system percolates, as in Percolation, when an
+ * open site in the first row is connected to an open site in the last row
+ * added.
+ *
+ * Rows are given as bitmaps in which bit (c &amp; 63) of word c &gt;&gt;&gt; 6
+ * is set if the site in column c is open. A grid file holds the rows one
+ * after the other as a single bit stream, site k of the grid (in row-major
+ * order) being bit (k &amp; 7) of byte k &gt;&gt;&gt; 3.
+ */
+public class StreamingPercolation {
+    private static final byte TOP = 1; // cluster contains a first-row site
+    private static final int BLOCKED = -1; // label of a blocked site
+
+    private int width; // number of sites in a row
+    private long rows; // number of rows added
+    private int[] prevLabel; // labels of the previous row's sites
+    private int[] curLabel; // labels of the current row's sites
+    private int numOfLabels; // labels in use: 0 to numOfLabels - 1
+
+    // union-find over labels; indexed by label, valid for roots only
+    private int[] parent; // parent[l] = parent of label l
+    private long[] size; // size[r] = number of sites in cluster r
+    private byte[] status; // status[r] = TOP flag of cluster r
+
+    private int[] renumber; // scratch: new label of each root, or -1
+    private long[] movedSize; // scratch: sizes of the renumbered clusters
+    private byte[] movedStatus; // scratch: flags of the renumbered clusters
+    private long finishedClusters; // clusters with no site in the last row
+    private long largestCluster; // size of the largest cluster seen
+    private boolean percolates; // a first-row site reaches the last row
+
+    /**
+     * Create a checker for a grid whose rows have N sites
+     */
+    public StreamingPercolation(int N) {
+        if (N <= 0) throw new IllegalArgumentException();
+        width = N;
+        prevLabel = new int[N];
+        curLabel = new int[N];
+        Arrays.fill(prevLabel, BLOCKED);
+        // a row has at most (N + 1) / 2 clusters, so two rows fit in N + 1
+        parent = new int[N + 1];
+        size = new long[N + 1];
+        status = new byte[N + 1];
+        renumber = new int[N + 1];
+        movedSize = new long[N + 1];
+        movedStatus = new byte[N + 1];
+    }
+
+    /**
+     * Add the next row of the grid
+     *
+     * @param open
+     *            open[c] is true if the site in column c is open
+     */
+    public void addRow(boolean[] open) {
+        if (open.length != width)
+            throw new IllegalArgumentException("row length " + open.length
+                    + " != " + width);
+        long[] bits = new long[(width + 63) >>> 6];
+        for (int c = 0; c < width; c++) {
+            if (open[c]) bits[c >>> 6] |= 1L << c;
+        }
+        addRow(bits);
+    }
+
+    /**
+     * Add the next row of the grid
+     *
+     * @param bits
+     *            bit (c &amp; 63) of bits[c &gt;&gt;&gt; 6] is set if the
+     *            site in column c is open
+     */
+    public void addRow(long[] bits) {
+        if (bits.length < (width + 63) >>> 6)
+            throw new IllegalArgumentException("row shorter than " + width);
+        for (int c = 0; c < width; c++) {
+            if ((bits[c >>> 6] & (1L << c)) == 0) {
+                curLabel[c] = BLOCKED;
+                continue;
+            }
+            int up = prevLabel[c];
+            int left = c > 0 ? curLabel[c - 1] : BLOCKED;
+            int label;
+            if (up == BLOCKED && left == BLOCKED) {
+                label = numOfLabels++;
+                parent[label] = label;
+                size[label] = 0;
+                status[label] = rows == 0 ? TOP : 0;
+            } else if (up == BLOCKED) {
+                label = left;
+            } else if (left == BLOCKED) {
+                label = up;
+            } else {
+                label = union(up, left);
+            }
+            curLabel[c] = label;
+            size[find(label)]++;
+        }
+        rows++;
+        relabel();
+    }
+
+    // retire the clusters that did not reach the current row and renumber
+    // the rest 0, 1, ... so that the next row has room for its own labels
+    private void relabel() {
+        Arrays.fill(renumber, 0, numOfLabels, -1);
+        int survivors = 0;
+        percolates = false;
+        for (int c = 0; c < width; c++) {
+            if (curLabel[c] == BLOCKED) continue;
+            int root = find(curLabel[c]);
+            if (renumber[root] < 0) {
+                renumber[root] = survivors++;
+                if (status[root] == TOP) percolates = true;
+            }
+            curLabel[c] = renumber[root];
+        }
+        for (int l = 0; l < numOfLabels; l++) {
+            if (parent[l] != l) continue;
+            largestCluster = Math.max(largestCluster, size[l]);
+            int k = renumber[l];
+            if (k < 0) {
+                finishedClusters++;
+            } else {
+                movedSize[k] = size[l];
+                movedStatus[k] = status[l];
+            }
+        }
+        for (int k = 0; k < survivors; k++) {
+            parent[k] = k;
+            size[k] = movedSize[k];
+            status[k] = movedStatus[k];
+        }
+        numOfLabels = survivors;
+
+        int[] t = prevLabel;
+        prevLabel = curLabel;
+        curLabel = t;
+    }
+
+    // root of the tree containing label p, halving the path on the way up
+    private int find(int p) {
+        while (parent[p] != p) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // merge the clusters with labels p and q; return the new root
+    private int union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return rootP;
+        if (size[rootP] < size[rootQ]) {
+            int t = rootP;
+            rootP = rootQ;
+            rootQ = t;
+        }
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        status[rootP] |= status[rootQ];
+        return rootP;
+    }
+
+    /**
+     * Does an open site in the first row connect to one in the last row
+     * added?
+     *
+     * @return true if the rows added so far percolate; false otherwise
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * Returns the number of rows added
+     *
+     * @return the number of rows added
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of clusters of open sites in the rows added
+     *
+     * @return the number of clusters of open sites
+     */
+    public long clusters() {
+        return finishedClusters + numOfLabels;
+    }
+
+    /**
+     * Returns the number of sites in the largest cluster in the rows added
+     *
+     * @return the number of sites in the largest cluster
+     */
+    public long largestCluster() {
+        return largestCluster;
+    }
+
+    /**
+     * Stream an N-by-N grid from a packed bit-grid file
+     *
+     * @return a checker that has consumed all N rows of the file
+     * @throws java.io.IOException
+     *             if the file cannot be read or holds fewer than N * N bits
+     */
+    public static StreamingPercolation read(Path file, int N)
+            throws IOException {
+        StreamingPercolation sp = new StreamingPercolation(N);
+        long[] row = new long[(N + 63) >>> 6];
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            BitReader bits = new BitReader(in);
+            for (int r = 0; r < N; r++) {
+                for (int w = 0; w < row.length; w++) {
+                    row[w] = bits.read(Math.min(64, N - (w << 6)));
+                }
+                sp.addRow(row);
+            }
+        }
+        return sp;
+    }
+
+    // reads a file as a stream of bits, lowest bit of each byte first
+    private static class BitReader {
+        private FileChannel in;
+        private ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+        private long pending; // bits read but not yet returned, lowest first
+        private int pendingBits; // number of bits in pending
+
+        BitReader(FileChannel in) {
+            this.in = in;
+            buf.flip();
+        }
+
+        // the next count (1 to 64) bits, the first in the lowest position
+        long read(int count) throws IOException {
+            while (pendingBits < count && pendingBits <= 56) {
+                pending |= nextByte() << pendingBits;
+                pendingBits += 8;
+            }
+            long result;
+            if (pendingBits >= count) {
+                result = pending & mask(count);
+                pending = count == 64 ? 0 : pending >>> count;
+                pendingBits -= count;
+            } else { // the last few bits come from a byte that does not fit
+                long b = nextByte();
+                int rest = count - pendingBits;
+                result = pending | (b & mask(rest)) << pendingBits;
+                pending = b >>> rest;
+                pendingBits = 8 - rest;
+            }
+            return result;
+        }
+
+        private long nextByte() throws IOException {
+            while (!buf.hasRemaining()) {
+                buf.clear();
+                int n = in.read(buf);
+                buf.flip();
+                if (n < 0) throw new EOFException("grid file too short");
+            }
+            return buf.get() & 0xFFL;
+        }
+
+        private static long mask(int count) {
+            return count == 64 ? -1L : (1L << count) - 1;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        StreamingPercolation sp;
+        if (args[0].equals("-file")) {
+            sp = read(Paths.get(args[1]), Integer.parseInt(args[2]));
+        } else {
+            // stream a random N-by-N grid with site vacancy probability p
+            int N = Integer.parseInt(args[0]);
+            double p = Double.parseDouble(args[1]);
+            RandomSource random = new Xoshiro256StarStar(args.length > 2
+                    ? Long.parseLong(args[2]) : System.nanoTime());
+            sp = new StreamingPercolation(N);
+            long[] row = new long[(N + 63) >>> 6];
+            for (int r = 0; r < N; r++) {
+                Arrays.fill(row, 0);
+                for (int c = 0; c < N; c++) {
+                    if (random.uniform() < p) row[c >>> 6] |= 1L << c;
+                }
+                sp.addRow(row);
+            }
+        }
+        StdOut.println("percolates      = " + sp.percolates());
+        StdOut.println("clusters        = " + sp.clusters());
+        StdOut.println("largest cluster = " + sp.largestCluster());
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The StripedPercolation class labels the clusters of a whole N-by-N grid on
+ * several cores. The grid is cut into horizontal strips whose sites are
+ * unioned in parallel, each strip touching only its own part of a shared
+ * flat union-find; the strips are then joined along their boundary rows.
+ * Once built it answers isOpen, isFull and percolates exactly as a
+ * Percolation with the same sites opened would.
+ *
+ * The grid is given as a bitmap in which bit (s &amp; 63) of word s &gt;&gt;&gt; 6
+ * is set if site s = N * (i - 1) + (j - 1) is open. The bitmap is copied, so
+ * later changes to it do not affect the labelling.
+ */
+public class StripedPercolation {
+    private static final byte TOP = 1; // component contains a top-row site
+    private static final byte BOTTOM = 2; // component contains a bottom-row site
+
+    private long[] open; // open[s >>> 6] bit (s & 63) is set if site s is open
+    private int[] parent; // parent[s] = parent of s, or -(tree size) if root
+    private byte[] status; // status[r] = TOP/BOTTOM flags of root r
+    private int len; // length of the grid
+    private boolean percolates; // some component has both TOP and BOTTOM
+
+    /**
+     * Label an N-by-N grid whose open sites are set in the given bitmap,
+     * using up to the given number of threads
+     */
+    public StripedPercolation(int N, long[] open, int parallelism) {
+        if (N <= 0 || (long) N * N > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism <= 0");
+        if (open.length < (N * N + 63) >>> 6)
+            throw new IllegalArgumentException("bitmap shorter than N * N");
+        len = N;
+        this.open = Arrays.copyOf(open, (N * N + 63) >>> 6);
+        parent = new int[N * N];
+        status = new byte[N * N];
+        Arrays.fill(parent, -1);
+
+        int strips = Math.min(parallelism, N);
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int k = 0; k < strips; k++) {
+            tasks.add(new Strip((int) ((long) N * k / strips),
+                    (int) ((long) N * (k + 1) / strips)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(strips);
+        try {
+            pool.invoke(new RecursiveAction() {
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        // join each strip to the one below it
+        for (int k = 1; k < strips; k++) {
+            int row = (int) ((long) N * k / strips);
+            for (int site = row * N; site < (row + 1) * N; site++) {
+                if (isOpenSite(site) && isOpenSite(site - N)) {
+                    union(site, site - N);
+                }
+            }
+        }
+
+        for (int site = 0; site < N; site++) {
+            if (isOpenSite(site)) status[find(site)] |= TOP;
+        }
+        for (int site = (N - 1) * N; site < N * N; site++) {
+            if (isOpenSite(site)) status[find(site)] |= BOTTOM;
+        }
+        for (int site = (N - 1) * N; site < N * N && !percolates; site++) {
+            if (isOpenSite(site) && status[find(site)] == (TOP | BOTTOM)) {
+                percolates = true;
+            }
+        }
+    }
+
+    // unions the open sites of rows [lo, hi) with their right and lower
+    // neighbours inside the strip; its trees never leave the strip
+    private class Strip extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+
+        Strip(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            for (int row = lo; row < hi; row++) {
+                for (int col = 0; col < len; col++) {
+                    int site = row * len + col;
+                    if (!isOpenSite(site)) continue;
+                    if (col < len - 1 && isOpenSite(site + 1)) {
+                        union(site, site + 1);
+                    }
+                    if (row < hi - 1 && isOpenSite(site + len)) {
+                        union(site, site + len);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Is site (row i, column j) open?
+     *
+     * @return true if site (row i, column j) is open; false otherwise
+     * @throws java.lang.IndexOutofBoundsException
+     *             unless both 1<= i <= N and 1 <= j <= N
+     */
+    public boolean isOpen(int i, int j) {
+        validate(i, j);
+        return isOpenSite(len * (i - 1) + (j - 1));
+    }
+
+    /**
+     * Is site (row i, column j) full?
+     *
+     * @return true if site (row i, column j) is full; false otherwise
+     * @throws java.lang.IndexOutofBoundsException
+     *             unless both 1<= i <= N and 1 <= j <= N
+     */
+    public boolean isFull(int i, int j) {
+        validate(i, j);
+        int site = len * (i - 1) + (j - 1);
+        return isOpenSite(site) && (status[find(site)] & TOP) != 0;
+    }
+
+    /**
+     * Does the system percolate?
+     *
+     * @return true of the system percolates; false otherwise
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // is the site with the given index open?
+    private boolean isOpenSite(int site) {
+        return (open[site >>> 6] & (1L << site)) != 0;
+    }
+
+    // throw an IndexOutOfBoundsException unless 1 <= i <= N and 1 <= j <= N
+    private void validate(int i, int j) {
+        if (i <= 0 || i > len || j <= 0 || j > len)
+            throw new IndexOutOfBoundsException("site (" + i + ", " + j
+                    + ") outside 1.." + len);
+    }
+
+    // root of the tree containing p
+    private int find(int p) {
+        return FlatUnionFind.find(parent, p);
+    }
+
+    // merge the trees containing p and q, smaller tree under larger
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP != rootQ) FlatUnionFind.link(parent, rootP, rootQ);
+    }
+
+    // label a random N-by-N grid with vacancy probability p on the given
+    // number of threads and check it against Percolation
+    public static void main(String[] args) {
+        int N = Integer.parseInt(args[0]);
+        double p = Double.parseDouble(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        RandomSource random = new Xoshiro256StarStar(
+                args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime());
+
+        long[] bits = new long[(N * N + 63) >>> 6];
+        Percolation pr = new Percolation(N);
+        for (int site = 0; site < N * N; site++) {
+            if (random.uniform() < p) {
+                bits[site >>> 6] |= 1L << site;
+                pr.open(site / N + 1, site % N + 1);
+            }
+        }
+
+        long start = System.nanoTime();
+        StripedPercolation sp = new StripedPercolation(N, bits, threads);
+        long elapsed = System.nanoTime() - start;
+
+        boolean same = sp.percolates() == pr.percolates();
+        for (int i = 1; i <= N && same; i++) {
+            for (int j = 1; j <= N && same; j++) {
+                same = sp.isFull(i, j) == pr.isFull(i, j);
+            }
+        }
+        StdOut.println("percolates = " + sp.percolates());
+        StdOut.println("labelled in " + elapsed / 1000000 + " ms on "
+                + threads + " threads");
+        StdOut.println("matches Percolation = " + same);
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The ThresholdHistogram class is an approximate quantile sketch for values
+ * in [0, 1], such as percolation thresholds. It counts values in equal-width
+ * bins, so memory is constant in the number of values and quantiles are
+ * accurate to one bin width. Counts are updated atomically, so several
+ * threads may add to the same histogram, and the result does not depend on
+ * the order of the adds.
+ */
+public class ThresholdHistogram {
+    /** default number of bins, a resolution of about 2.4e-4 */
+    public static final int DEFAULT_BINS = 1 << 12;
+
+    private AtomicLongArray counts; // counts[b] = values in bin b
+
+    /**
+     * Initializes an empty histogram with DEFAULT_BINS bins
+     */
+    public ThresholdHistogram() {
+        this(DEFAULT_BINS);
+    }
+
+    /**
+     * Initializes an empty histogram with the given number of bins
+     */
+    public ThresholdHistogram(int bins) {
+        if (bins <= 0) throw new IllegalArgumentException("bins <= 0");
+        counts = new AtomicLongArray(bins);
+    }
+
+    /**
+     * Adds a value
+     *
+     * @param x
+     *            the value to add
+     * @throws java.lang.IllegalArgumentException
+     *             unless 0 <= x <= 1
+     */
+    public void add(double x) {
+        if (!(x >= 0.0 && x <= 1.0))
+            throw new IllegalArgumentException("value outside [0, 1]: " + x);
+        counts.incrementAndGet(bin(x));
+    }
+
+    /**
+     * Returns the number of bins
+     *
+     * @return the number of bins
+     */
+    public int bins() {
+        return counts.length();
+    }
+
+    /**
+     * Returns the number of values in bin b
+     *
+     * @return the number of values in bin b
+     */
+    public long count(int b) {
+        return counts.get(b);
+    }
+
+    /**
+     * Sets the number of values in bin b, as when restoring a saved histogram
+     */
+    public void setCount(int b, long count) {
+        if (count < 0) throw new IllegalArgumentException("count < 0");
+        counts.set(b, count);
+    }
+
+    /**
+     * Returns an approximate q-quantile of the values added, interpolating
+     * linearly within the bin that contains it, or NaN if empty
+     *
+     * @return an approximate q-quantile
+     * @throws java.lang.IllegalArgumentException
+     *             unless 0 <= q <= 1
+     */
+    public double quantile(double q) {
+        if (!(q >= 0.0 && q <= 1.0))
+            throw new IllegalArgumentException("q outside [0, 1]: " + q);
+        int n = counts.length();
+        long total = 0;
+        for (int b = 0; b < n; b++) {
+            total += counts.get(b);
+        }
+        if (total == 0) return Double.NaN;
+
+        double rank = q * total;
+        long seen = 0;
+        for (int b = 0; b < n; b++) {
+            long c = counts.get(b);
+            if (c > 0 && seen + c >= rank) {
+                return (b + (rank - seen) / c) / n;
+            }
+            seen += c;
+        }
+        return 1.0;
+    }
+
+    // index of the bin containing x; 1.0 falls into the last bin
+    private int bin(double x) {
+        int n = counts.length();
+        return Math.min((int) (x * n), n - 1);
+    }
+}
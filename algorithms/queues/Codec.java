@@ -0,0 +1,75 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Codec interface turns items into bytes and back, for containers such as
+ * SpillingDeque that keep their items serialized outside the Java heap.
+ */
+public interface Codec<Item> {
+    /**
+     * Returns the number of bytes encode() writes for the item
+     *
+     * @param item
+     *            the item to measure
+     * @return the length of the item's encoding
+     */
+    int size(Item item);
+
+    /**
+     * Writes the item's encoding, exactly size(item) bytes, at the buffer's
+     * position
+     *
+     * @param item
+     *            the item to encode
+     * @param buf
+     *            the buffer to write to, with room for size(item) bytes
+     */
+    void encode(Item item, ByteBuffer buf);
+
+    /**
+     * Reads an item back from its encoding
+     *
+     * @param buf
+     *            a buffer whose remaining bytes are exactly one encoding
+     * @return the item encoded
+     */
+    Item decode(ByteBuffer buf);
+
+    /** a Long as 8 bytes */
+    Codec<Long> LONG = new Codec<Long>() {
+        public int size(Long item) {
+            return 8;
+        }
+
+        public void encode(Long item, ByteBuffer buf) {
+            buf.putLong(item);
+        }
+
+        public Long decode(ByteBuffer buf) {
+            return buf.getLong();
+        }
+    };
+
+    /** a String as UTF-8 */
+    Codec<String> UTF8 = new Codec<String>() {
+        public int size(String item) {
+            // exact for the common all-ASCII case, else measured
+            int n = item.length();
+            for (int i = 0; i < n; i++) {
+                if (item.charAt(i) >= 0x80)
+                    return item.getBytes(StandardCharsets.UTF_8).length;
+            }
+            return n;
+        }
+
+        public void encode(String item, ByteBuffer buf) {
+            buf.put(item.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public String decode(ByteBuffer buf) {
+            byte[] bytes = new byte[buf.remaining()];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
@@ -0,0 +1,413 @@
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ConcurrentRandomizedQueue class is a RandomizedQueue that many threads
+ * may use at once. Items are spread over stripes, each a resizing array with
+ * its own lock. A thread always enqueues to its home stripe, assigned round
+ * robin when it first uses the queue, and draws from its own random source,
+ * split off the queue's master; so threads that only enqueue never contend.
+ *
+ * The stripe sizes are published in one array, a cache line apart, so an
+ * enqueue on one stripe does not disturb threads reading the others. To
+ * dequeue or sample, a thread draws a stripe s uniformly and a position r
+ * below a shared bound on every stripe's size, and keeps them if r is below
+ * the size of s; every item is then equally likely, and when the stripes
+ * are about equally full one or two draws suffice. After as many misses as
+ * there are stripes, as when the items sit in a few stripes, it reads every
+ * size once and picks a position among all items instead. Either way it
+ * then locks the stripe and takes the item there, retrying if the stripe has
+ * shrunk past it meanwhile. With no concurrent changes each item is chosen
+ * with probability exactly 1 / size, as in RandomizedQueue.
+ */
+public class ConcurrentRandomizedQueue<Item> implements Iterable<Item> {
+    private static final int PAD = 16; // ints in a 64-byte cache line
+
+    private Stripe<Item>[] stripes; // the stripes, a power of two of them
+    // counts[(s + 1) * PAD] = size of stripe s, written under its lock; the
+    // first line is left to the array header
+    private AtomicIntegerArray counts;
+    // a power of two at least the size of every stripe, raised by add()
+    // whenever a stripe outgrows it and lowered by scan()
+    private AtomicInteger bound = new AtomicInteger(1);
+    private RandomSource master; // splits each thread's source; guarded
+    private AtomicInteger nextHome = new AtomicInteger(); // round robin
+    private ThreadLocal<Home> home = new ThreadLocal<Home>();
+
+    // a resizing array of items guarded by its lock; the queue publishes
+    // its size in counts for reading without the lock
+    private static final class Stripe<Item> {
+        final ReentrantLock lock = new ReentrantLock();
+        Item[] items = newArray(Object.class, 1);
+        int size;
+
+        // append an item; lock held
+        void add(Item item) {
+            int n = size;
+            if (n == items.length)
+                resize(2 * items.length);
+            items[n] = item;
+            size = n + 1;
+        }
+
+        // remove the item at pos, moving the last item there; lock held
+        Item remove(int pos) {
+            int n = size - 1;
+            Item item = items[pos];
+            items[pos] = items[n];
+            items[n] = null;
+            size = n;
+            if (n > 0 && n == items.length / 4)
+                resize(items.length / 2);
+            return item;
+        }
+
+        private void resize(int capacity) {
+            Item[] temp = newArray(Object.class, capacity);
+            System.arraycopy(items, 0, temp, 0, size);
+            items = temp;
+        }
+    }
+
+    // a thread's home stripe, random source and scratch space
+    private static final class Home {
+        final int stripe;
+        final RandomSource random;
+        final int[] sizes; // stripe sizes read by scan()
+
+        Home(int stripe, RandomSource random, int stripes) {
+            this.stripe = stripe;
+            this.random = random;
+            sizes = new int[stripes];
+        }
+    }
+
+    /**
+     * Initializes an empty queue with a stripe per available processor,
+     * seeded from the clock
+     */
+    public ConcurrentRandomizedQueue() {
+        this(Runtime.getRuntime().availableProcessors(), System.nanoTime());
+    }
+
+    /**
+     * Initializes an empty queue with at least the given number of stripes,
+     * rounded up to a power of two; each thread's random source is split
+     * off a master seeded with the given seed
+     */
+    public ConcurrentRandomizedQueue(int stripes, long seed) {
+        if (stripes <= 0 || stripes > 1 << 16)
+            throw new IllegalArgumentException("stripes outside 1..65536");
+        int n = Integer.highestOneBit(stripes);
+        if (n < stripes) n *= 2;
+        this.stripes = newArray(Stripe.class, n);
+        for (int s = 0; s < n; s++) {
+            this.stripes[s] = new Stripe<Item>();
+        }
+        counts = new AtomicIntegerArray((n + 1) * PAD);
+        master = new Xoshiro256StarStar(seed);
+    }
+
+    // a new array of n elements of the given class, typed as the caller
+    // needs it; the one unchecked cast in the class
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> component, int n) {
+        return (T[]) Array.newInstance(component, n);
+    }
+
+    // the calling thread's home, assigning it on first use
+    private Home home() {
+        Home h = home.get();
+        if (h == null) {
+            int stripe = nextHome.getAndIncrement() & (stripes.length - 1);
+            h = new Home(stripe, split(), stripes.length);
+            home.set(h);
+        }
+        return h;
+    }
+
+    // a new random source split off the master
+    private synchronized RandomSource split() {
+        return master.split();
+    }
+
+    // the published size of stripe s
+    private int count(int s) {
+        return counts.get((s + 1) * PAD);
+    }
+
+    // raise the bound to a power of two at least n, unless it is already
+    private void raiseBound(int n) {
+        int b = bound.get();
+        while (b < n) {
+            if (bound.compareAndSet(b, powerOfTwoAtLeast(n))) return;
+            b = bound.get();
+        }
+    }
+
+    // the least power of two at least n, for 1 <= n <= 2^30
+    private static int powerOfTwoAtLeast(int n) {
+        return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Is the queue empty? Only a snapshot while other threads are using it.
+     *
+     * @return true if the queue is empty; false otherwise
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of items on the queue; only a snapshot while other
+     * threads are using it
+     *
+     * @return the number of items on the queue
+     */
+    public int size() {
+        long n = 0;
+        for (int s = 0; s < stripes.length; s++) {
+            n += count(s);
+        }
+        return (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Add an item to the queue
+     *
+     * @param item
+     *            the item to add
+     */
+    public void enqueue(Item item) {
+        if (item == null)
+            throw new NullPointerException("Null item added");
+        add(home().stripe, item);
+    }
+
+    // add an item to the given stripe, then make sure the bound covers it
+    private void add(int stripe, Item item) {
+        Stripe<Item> s = stripes[stripe];
+        int n;
+        s.lock.lock();
+        try {
+            s.add(item);
+            n = s.size;
+            counts.set((stripe + 1) * PAD, n);
+        } finally {
+            s.lock.unlock();
+        }
+        if (n > bound.get()) raiseBound(n);
+    }
+
+    /**
+     * Removes and returns a random item
+     *
+     * @return a random item from the queue
+     * @throws java.util.NoSuchElementException
+     *             if the queue is empty
+     */
+    public Item dequeue() {
+        Item item = take(true);
+        if (item == null)
+            throw new NoSuchElementException("Randomized Queue underflow");
+        return item;
+    }
+
+    /**
+     * Removes and returns a random item, or null if the queue is empty
+     *
+     * @return a random item from the queue, or null
+     */
+    public Item poll() {
+        return take(true);
+    }
+
+    /**
+     * Returns (but not deletes) a random item
+     *
+     * @return a random item
+     * @throws java.util.NoSuchElementException
+     *             if the queue is empty
+     */
+    public Item sample() {
+        Item item = take(false);
+        if (item == null)
+            throw new NoSuchElementException("Randomized Queue underflow");
+        return item;
+    }
+
+    // pick a uniformly random item and remove it if asked to; null if the
+    // queue is empty
+    private Item take(boolean remove) {
+        Home h = home();
+        RandomSource random = h.random;
+        int mask = stripes.length - 1;
+        while (true) {
+            int s = -1;
+            int r = 0;
+            for (int tries = 0; tries <= mask; tries++) {
+                int t = random.uniform(mask + 1);
+                int n = count(t);
+                if (n == 0) continue;
+                r = random.uniform(bound.get());
+                if (r < n) {
+                    s = t;
+                    break;
+                }
+            }
+            if (s < 0) {
+                long pick = scan(h);
+                if (pick < 0) return null;
+                s = (int) (pick >>> 32);
+                r = (int) pick;
+            }
+            Item item = takeAt(s, r, remove);
+            if (item != null) return item;
+        }
+    }
+
+    // read every stripe size once, lower the bound to fit them, and pick a
+    // position uniformly among all items; returns the stripe in the high
+    // half and the position in the low half, or -1 if the queue is empty
+    private long scan(Home h) {
+        int[] sizes = h.sizes;
+        long total = 0;
+        int max = 0;
+        for (int s = 0; s < stripes.length; s++) {
+            sizes[s] = count(s);
+            total += sizes[s];
+            max = Math.max(max, sizes[s]);
+        }
+        if (total == 0) return -1;
+        int fitted = powerOfTwoAtLeast(max);
+        if (fitted < bound.get()) {
+            // an add that read the old bound may have outgrown this one;
+            // its size is published before it reads the bound, so looking
+            // at every size again catches it
+            bound.set(fitted);
+            for (int s = 0; s < stripes.length; s++) {
+                raiseBound(count(s));
+            }
+        }
+        RandomSource random = h.random;
+        long r = total <= Integer.MAX_VALUE ? random.uniform((int) total)
+                : Math.floorMod(random.nextLong(), total);
+        int s = 0;
+        while (r >= sizes[s]) {
+            r -= sizes[s++];
+        }
+        return (long) s << 32 | r;
+    }
+
+    // the item at position r of stripe s, removed if asked to; null if the
+    // stripe has shrunk past r since its size was read
+    private Item takeAt(int s, int r, boolean remove) {
+        Stripe<Item> stripe = stripes[s];
+        stripe.lock.lock();
+        try {
+            if (r >= stripe.size) return null;
+            if (!remove) return stripe.items[r];
+            Item item = stripe.remove(r);
+            counts.set((s + 1) * PAD, stripe.size);
+            return item;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an independent iterator over the items in random order. It
+     * walks a snapshot taken one stripe at a time, so it never fails
+     * because of concurrent changes, but may miss some made while the
+     * snapshot is taken. It draws from its own random source, split off the
+     * queue's master, so it may be handed to another thread.
+     *
+     * @return an iterator over the items in random order
+     */
+    public Iterator<Item> iterator() {
+        RandomizedQueue<Item> snapshot = new RandomizedQueue<Item>(split());
+        for (Stripe<Item> s : stripes) {
+            s.lock.lock();
+            try {
+                for (int k = 0; k < s.size; k++) {
+                    snapshot.enqueue(s.items[k]);
+                }
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        return snapshot.iterator();
+    }
+
+    // check uniformity with a chi-square test, then time a mixed workload
+    // on several threads and check that no item is lost or duplicated
+    public static void main(String[] args) throws InterruptedException {
+        int trials = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+
+        // items 0..9 put unevenly on 4 stripes; the first item dequeued
+        // should be each with probability 1/10
+        int n = 10;
+        long[] counts = new long[n];
+        ConcurrentRandomizedQueue<Integer> q =
+                new ConcurrentRandomizedQueue<Integer>(4, 42);
+        for (int t = 0; t < trials; t++) {
+            for (int k = 0; k < n; k++) {
+                q.add(k < 6 ? 0 : k < 9 ? 1 : 3, k);
+            }
+            counts[q.dequeue()]++;
+            while (q.poll() != null) { }
+        }
+        double chi2 = 0;
+        for (int k = 0; k < n; k++) {
+            double e = (double) trials / n;
+            chi2 += (counts[k] - e) * (counts[k] - e) / e;
+        }
+        // 27.88 is the 0.999 quantile of chi-square with 9 degrees of freedom
+        StdOut.println("chi-square (9 df)  = " + chi2
+                + (chi2 < 27.88 ? ", uniform at 0.1%" : ", NOT uniform"));
+
+        // each thread enqueues its own range and dequeues about as many
+        final int perThread = 1000000;
+        final ConcurrentRandomizedQueue<Integer> shared =
+                new ConcurrentRandomizedQueue<Integer>(threads, 7);
+        final AtomicIntegerArray seen = new AtomicIntegerArray(
+                threads * perThread);
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            final int base = w * perThread;
+            workers[w] = new Thread(new Runnable() {
+                public void run() {
+                    for (int k = 0; k < perThread; k++) {
+                        shared.enqueue(base + k);
+                        if ((k & 1) == 1) {
+                            Integer item = shared.poll();
+                            if (item != null) seen.incrementAndGet(item);
+                        }
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        long elapsed = System.nanoTime() - start;
+        for (Integer item = shared.poll(); item != null;
+                item = shared.poll()) {
+            seen.incrementAndGet(item);
+        }
+        int wrong = 0;
+        for (int k = 0; k < seen.length(); k++) {
+            if (seen.get(k) != 1) wrong++;
+        }
+        StdOut.println("mixed workload     = " + elapsed / 1000000 + " ms on "
+                + threads + " threads");
+        StdOut.println("items not dequeued exactly once = " + wrong);
+    }
+}
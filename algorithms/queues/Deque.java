@@ -1,31 +1,35 @@
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The Deque class is a generalization of a stack and queue that supports
  * inserting and removing items from either the front or the back of the data
- * structure. (Using doubly linked list)
+ * structure. (Using a circular resizing array whose capacity is a power of
+ * two, so positions wrap around with a mask rather than a division)
  * 
  * @author Shuai Wang
  */
 public class Deque<Item> implements Iterable<Item> {
-    private Node first; // reference to the beginning of deque
-    private Node last; // reference to the end of deque
-    private int size; // number of elements on deque
+    private static final int MIN_CAPACITY = 8; // a power of two
+    private static final int MAX_CAPACITY = 1 << 30; // largest power of two
 
-    // helper linked list class
-    private class Node {
-        private Item item;
-        private Node prev;
-        private Node next;
-    }
+    private Item[] items; // items[(first + k) & mask] = k-th item from front
+    private int first; // index of the item at the front of deque
+    private int size; // number of elements on deque
+    private int modCount; // changes so far, for iterators to detect
 
     /**
      * Constructs an empty Deque
      */
     public Deque() {
-        first = null;
-        last = null;
+        items = newArray(MIN_CAPACITY);
+        first = 0;
         size = 0;
     }
 
@@ -47,6 +51,47 @@ public class Deque<Item> implements Iterable<Item> {
         return size;
     }
 
+    // resize the underlying array, moving the front of deque to index 0
+    private void resize(int capacity) {
+        assert capacity >= size && Integer.bitCount(capacity) == 1;
+        Item[] temp = newArray(capacity);
+        int head = Math.min(size, items.length - first); // up to the wrap
+        System.arraycopy(items, first, temp, 0, head);
+        System.arraycopy(items, 0, temp, head, size - head);
+        items = temp;
+        first = 0;
+    }
+
+    // a new array of n items; the one unchecked cast in the class
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int n) {
+        return (T[]) new Object[n];
+    }
+
+    // double the array to make room for another item
+    private void grow() {
+        if (items.length == MAX_CAPACITY)
+            throw new IllegalStateException("Deque too large");
+        resize(2 * items.length);
+    }
+
+    // halve the array once it is a quarter full, so that a deque hovering
+    // around a power of two does not resize on every add and remove
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && size == items.length / 4)
+            resize(items.length / 2);
+    }
+
+    // the capacity the array would have reached by single adds or removes
+    // to the current size: at least MIN_CAPACITY, more than a quarter full
+    private int fittedCapacity(int capacity) {
+        while (capacity < size)
+            capacity *= 2;
+        while (capacity > MIN_CAPACITY && size <= capacity / 4)
+            capacity /= 2;
+        return capacity;
+    }
+
     /**
      * Inserts item at the front of the deque
      * 
@@ -55,21 +100,12 @@ public class Deque<Item> implements Iterable<Item> {
     public void addFirst(Item item) {
         if (item == null)
             throw new NullPointerException("Null item added");
-        if (size == 0) {
-            first = new Node();
-            first.item = item;
-            first.next = null;
-            first.prev = null;
-            last = first;
-        } else {
-            Node oldFirst = first;
-            first = new Node();
-            first.item = item;
-            first.next = oldFirst;
-            first.prev = null;
-            oldFirst.prev = first;
-        }
+        if (size == items.length)
+            grow();
+        first = (first - 1) & (items.length - 1);
+        items[first] = item;
         size++;
+        modCount++;
         assert check();
     }
 
@@ -81,24 +117,77 @@ public class Deque<Item> implements Iterable<Item> {
     public void addLast(Item item) {
         if (item == null)
             throw new NullPointerException("Null item added");
-        if (size == 0) {
-            last = new Node();
-            last.item = item;
-            last.next = null;
-            last.prev = null;
-            first = last;
-        } else {
-            Node oldLast = last;
-            last = new Node();
-            last.item = item;
-            last.next = null;
-            last.prev = oldLast;
-            oldLast.next = last;
-        }
+        if (size == items.length)
+            grow();
+        items[(first + size) & (items.length - 1)] = item;
         size++;
+        modCount++;
         assert check();
     }
 
+    /**
+     * Inserts every item of the collection at the end of the deque, in the
+     * collection's iteration order, resizing the array at most once
+     * 
+     * @param c
+     *            the items to insert
+     * @throws java.lang.NullPointerException
+     *             if c or any of its items is null; the deque is then left
+     *             unchanged
+     */
+    public void addAll(Collection<? extends Item> c) {
+        Object[] a = c.toArray();
+        for (Object item : a) {
+            if (item == null)
+                throw new NullPointerException("Null item added");
+        }
+        if ((long) size + a.length > MAX_CAPACITY)
+            throw new IllegalStateException("Deque too large");
+        int capacity = items.length;
+        while (capacity < size + a.length)
+            capacity *= 2;
+        if (capacity != items.length)
+            resize(capacity);
+        int end = (first + size) & (items.length - 1);
+        int tail = Math.min(a.length, items.length - end); // up to the wrap
+        System.arraycopy(a, 0, items, end, tail);
+        System.arraycopy(a, tail, items, 0, a.length - tail);
+        size += a.length;
+        modCount++;
+        assert check();
+    }
+
+    /**
+     * Removes up to max items from the front of the deque and adds them to
+     * the collection in order, resizing the array at most once
+     * 
+     * @param c
+     *            the collection to add the items to
+     * @param max
+     *            the largest number of items to move
+     * @return the number of items moved
+     */
+    public int drainTo(Collection<? super Item> c, int max) {
+        if (c == null)
+            throw new NullPointerException("Null collection");
+        if (max < 0)
+            throw new IllegalArgumentException("max < 0");
+        int n = Math.min(max, size);
+        for (int k = 0; k < n; k++) {
+            c.add(items[first]);
+            items[first] = null; // to avoid loitering
+            first = (first + 1) & (items.length - 1);
+            size--;
+        }
+        if (n > 0)
+            modCount++;
+        int capacity = fittedCapacity(items.length);
+        if (capacity != items.length)
+            resize(capacity);
+        assert check();
+        return n;
+    }
+
     /**
      * Removes and returns the item at the front of the deque
      * 
@@ -107,15 +196,12 @@ public class Deque<Item> implements Iterable<Item> {
     public Item removeFirst() {
         if (isEmpty())
             throw new NoSuchElementException("Deque underflow");
-        Item item = first.item; // item to be removed
-        if (size == 1) {
-            first = null;
-            last = first;
-        } else {
-            first = first.next;
-            first.prev = null;
-        }
+        Item item = items[first]; // item to be removed
+        items[first] = null; // to avoid loitering
+        first = (first + 1) & (items.length - 1);
         size--;
+        modCount++;
+        shrinkIfSparse();
         assert check();
         return item;
     }
@@ -128,55 +214,29 @@ public class Deque<Item> implements Iterable<Item> {
     public Item removeLast() {
         if (isEmpty())
             throw new NoSuchElementException("Deque underflow");
-        Item item = last.item;
-        if (size == 1) {
-            last = null;
-            first = last;
-        } else {
-            last = last.prev;
-            last.next = null;
-        }
+        int last = (first + size - 1) & (items.length - 1);
+        Item item = items[last];
+        items[last] = null; // to avoid loitering
         size--;
+        modCount++;
+        shrinkIfSparse();
         assert check();
         return item;
     }
 
     // check internal invariants
     private boolean check() {
-        if (size == 0) {
-            if (first != null)
-                return false;
-            if (last != null)
-                return false;
-        } else if (size == 1) {
-            if (first == null || last == null)
-                return false;
-            if (first != last)
-                return false;
-            if (first.next != null || first.prev != null)
-                return false;
-        } else {
-            if (first == last)
-                return false;
-            if (first.next == null || last.prev == null)
-                return false;
-            if (last.next != null || first.prev != null)
-                return false;
-
-            // check internal consistency of instance variable size
-            int numberOfNodes = 0;
-            for (Node x = first; x != null; x = x.next) {
-                numberOfNodes++;
-            }
-            if (numberOfNodes != size)
-                return false;
-
-            // check internal consistency of instance variable last
-            Node lastNode = first;
-            while (lastNode.next != null) {
-                lastNode = lastNode.next;
-            }
-            if (last != lastNode)
+        int capacity = items.length;
+        if (Integer.bitCount(capacity) != 1 || capacity < MIN_CAPACITY)
+            return false;
+        if (size < 0 || size > capacity || first < 0 || first >= capacity)
+            return false;
+        if (capacity > MIN_CAPACITY && size < capacity / 4)
+            return false;
+        // the size slots from first hold items, the others hold null
+        for (int k = 0; k < capacity; k++) {
+            Item item = items[(first + k) & (capacity - 1)];
+            if ((item != null) != (k < size))
                 return false;
         }
         return true;
@@ -184,7 +244,8 @@ public class Deque<Item> implements Iterable<Item> {
 
     /**
      * Returns an iterator that iterates over items from front to end in the
-     * deque
+     * deque. It fails fast with a ConcurrentModificationException if the
+     * deque is changed while it is in use.
      * 
      * @return an iterator that iterates over items from front to end in the
      *         deque
@@ -193,12 +254,97 @@ public class Deque<Item> implements Iterable<Item> {
         return new DequeIterator();
     }
 
+    /**
+     * Returns a spliterator over the items from front to end in the deque.
+     * It knows its exact size and splits its range of positions in half, so
+     * parallel streams divide the work evenly. Like the iterator it throws a
+     * ConcurrentModificationException if the deque is changed while it is
+     * in use.
+     * 
+     * @return a spliterator over the items from front to end in the deque
+     */
+    public Spliterator<Item> spliterator() {
+        return new DequeSpliterator(0, size, modCount);
+    }
+
+    /**
+     * Returns a sequential stream of the items from front to end
+     * 
+     * @return a sequential stream of the items
+     */
+    public Stream<Item> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a possibly parallel stream of the items from front to end
+     * 
+     * @return a possibly parallel stream of the items
+     */
+    public Stream<Item> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // a spliterator over positions [k, hi) from the front
+    private class DequeSpliterator implements Spliterator<Item> {
+        private int k; // position from the front of the next item
+        private final int hi; // one past the last position
+        private final int expectedModCount;
+
+        DequeSpliterator(int k, int hi, int expectedModCount) {
+            this.k = k;
+            this.hi = hi;
+            this.expectedModCount = expectedModCount;
+        }
+
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (action == null)
+                throw new NullPointerException();
+            checkForComodification(expectedModCount);
+            if (k >= hi)
+                return false;
+            action.accept(items[(first + k++) & (items.length - 1)]);
+            return true;
+        }
+
+        public void forEachRemaining(Consumer<? super Item> action) {
+            if (action == null)
+                throw new NullPointerException();
+            Item[] a = items;
+            int mask = a.length - 1;
+            for (int f = first; k < hi; k++) {
+                checkForComodification(expectedModCount);
+                action.accept(a[(f + k) & mask]);
+            }
+            checkForComodification(expectedModCount);
+        }
+
+        public Spliterator<Item> trySplit() {
+            int mid = (k + hi) >>> 1;
+            if (mid <= k)
+                return null;
+            int lo = k;
+            k = mid;
+            return new DequeSpliterator(lo, mid, expectedModCount);
+        }
+
+        public long estimateSize() {
+            return hi - k;
+        }
+
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     // an iterator
     private class DequeIterator implements Iterator<Item> {
-        private Node current = first;
+        private int k = 0; // position from the front of the next item
+        private final int expectedModCount = modCount;
 
         public boolean hasNext() {
-            return current != null;
+            checkForComodification(expectedModCount);
+            return k < size;
         }
 
         public void remove() {
@@ -208,9 +354,13 @@ public class Deque<Item> implements Iterable<Item> {
         public Item next() {
             if (!hasNext())
                 throw new NoSuchElementException();
-            Item item = current.item;
-            current = current.next;
-            return item;
+            return items[(first + k++) & (items.length - 1)];
         }
     }
+
+    // throw if the deque has changed since an iterator or spliterator began
+    private void checkForComodification(int expectedModCount) {
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
 }
@@ -0,0 +1,151 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * The DoubleDeque class is a Deque of double values. It stores the values
+ * themselves in a circular resizing array, so adding and removing never box
+ * and, once the array has grown to the deque's working size, never allocate.
+ */
+public class DoubleDeque implements Iterable<Double> {
+    private static final int MIN_CAPACITY = 8; // a power of two
+    private static final int MAX_CAPACITY = 1 << 30; // largest power of two
+
+    private double[] items; // items[(first + k) & mask] = k-th from front
+    private int first; // index of the item at the front of deque
+    private int size; // number of elements on deque
+
+    /**
+     * Constructs an empty DoubleDeque
+     */
+    public DoubleDeque() {
+        items = new double[MIN_CAPACITY];
+        first = 0;
+        size = 0;
+    }
+
+    /**
+     * Is this deque empty?
+     * 
+     * @return true if this deque is empty; false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of items on this deque
+     * 
+     * @return the number of items on this deque
+     */
+    public int size() {
+        return size;
+    }
+
+    // resize the underlying array, moving the front of deque to index 0
+    private void resize(int capacity) {
+        assert capacity >= size && Integer.bitCount(capacity) == 1;
+        double[] temp = new double[capacity];
+        int head = Math.min(size, items.length - first); // up to the wrap
+        System.arraycopy(items, first, temp, 0, head);
+        System.arraycopy(items, 0, temp, head, size - head);
+        items = temp;
+        first = 0;
+    }
+
+    // double the array to make room for another item
+    private void grow() {
+        if (items.length == MAX_CAPACITY)
+            throw new IllegalStateException("Deque too large");
+        resize(2 * items.length);
+    }
+
+    // halve the array once it is a quarter full
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && size == items.length / 4)
+            resize(items.length / 2);
+    }
+
+    /**
+     * Inserts item at the front of the deque
+     * 
+     * @item the item to insert
+     */
+    public void addFirst(double item) {
+        if (size == items.length)
+            grow();
+        first = (first - 1) & (items.length - 1);
+        items[first] = item;
+        size++;
+    }
+
+    /**
+     * Inserts the item at the end of the deque
+     * 
+     * @item the item to insert
+     */
+    public void addLast(double item) {
+        if (size == items.length)
+            grow();
+        items[(first + size) & (items.length - 1)] = item;
+        size++;
+    }
+
+    /**
+     * Removes and returns the item at the front of the deque
+     * 
+     * @return the item at the front of the deque
+     */
+    public double removeFirst() {
+        if (isEmpty())
+            throw new NoSuchElementException("Deque underflow");
+        double item = items[first];
+        first = (first + 1) & (items.length - 1);
+        size--;
+        shrinkIfSparse();
+        return item;
+    }
+
+    /**
+     * Removes and returns the item at the end of the deque
+     * 
+     * @return the item at the end of the deque
+     */
+    public double removeLast() {
+        if (isEmpty())
+            throw new NoSuchElementException("Deque underflow");
+        double item = items[(first + size - 1) & (items.length - 1)];
+        size--;
+        shrinkIfSparse();
+        return item;
+    }
+
+    /**
+     * Returns an iterator that iterates over items from front to end in the
+     * deque; nextDouble() returns them without boxing
+     * 
+     * @return an iterator that iterates over items from front to end in the
+     *         deque
+     */
+    public PrimitiveIterator.OfDouble iterator() {
+        return new DequeIterator();
+    }
+
+    // an iterator
+    private class DequeIterator implements PrimitiveIterator.OfDouble {
+        private int k = 0; // position from the front of the next item
+
+        public boolean hasNext() {
+            return k < size;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public double nextDouble() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return items[(first + k++) & (items.length - 1)];
+        }
+    }
+}
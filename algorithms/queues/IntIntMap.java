@@ -0,0 +1,79 @@
+import java.util.Arrays;
+
+/**
+ * The IntIntMap class is a small open-addressing hash map from non-negative
+ * int keys to int values, for sparse Fisher-Yates shuffles: it records only
+ * the positions that have been swapped, so k steps of a shuffle over n items
+ * take O(k) time and space rather than O(n). Keys are probed linearly in
+ * parallel int arrays, and the table doubles at half load.
+ */
+final class IntIntMap {
+    private static final int EMPTY = -1; // key of an unused slot
+
+    private int[] keys; // keys[h] = key in slot h, or EMPTY
+    private int[] vals; // vals[h] = value of keys[h]
+    private int size; // number of keys
+
+    /**
+     * Initializes an empty map with room for about the given number of keys
+     */
+    IntIntMap(int expected) {
+        int capacity = 8;
+        while (capacity < 2 * expected && capacity < 1 << 30)
+            capacity *= 2;
+        keys = new int[capacity];
+        vals = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Returns the value of the key, or the given default if it has none
+     */
+    int get(int key, int otherwise) {
+        int mask = keys.length - 1;
+        for (int h = hash(key) & mask;; h = (h + 1) & mask) {
+            if (keys[h] == key) return vals[h];
+            if (keys[h] == EMPTY) return otherwise;
+        }
+    }
+
+    /**
+     * Sets the value of a key, which must be non-negative
+     */
+    void put(int key, int val) {
+        assert key >= 0;
+        int mask = keys.length - 1;
+        int h = hash(key) & mask;
+        while (keys[h] != EMPTY && keys[h] != key)
+            h = (h + 1) & mask;
+        if (keys[h] == EMPTY) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+                put(key, val);
+                return;
+            }
+            keys[h] = key;
+            size++;
+        }
+        vals[h] = val;
+    }
+
+    // double the table and reinsert every key
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldVals = vals;
+        keys = new int[2 * oldKeys.length];
+        vals = new int[2 * oldKeys.length];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int h = 0; h < oldKeys.length; h++) {
+            if (oldKeys[h] != EMPTY) put(oldKeys[h], oldVals[h]);
+        }
+    }
+
+    // spread consecutive keys over the table (a Fibonacci hash)
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,5 +1,13 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The RandomizedQueue is similar to a stack or queue, except that the item
@@ -10,13 +18,26 @@ import java.util.NoSuchElementException;
 public class RandomizedQueue<Item> implements Iterable<Item> {
     private Item[] items; // items of items
     private int size; // number of elements in RandomizedQueue
+    private RandomSource random; // source of the random choices
+    private int modCount; // changes so far, for iterators to detect
 
     /**
-     * Initializes an empty randomized queue
+     * Initializes an empty randomized queue drawing from StdRandom
      */
     public RandomizedQueue() {
-        items = (Item[]) new Object[1];
+        this(StdRandomSource.INSTANCE);
+    }
+
+    /**
+     * Initializes an empty randomized queue drawing from the given source,
+     * which its iterators share
+     */
+    public RandomizedQueue(RandomSource random) {
+        if (random == null)
+            throw new NullPointerException("Null random");
+        items = newArray(1);
         size = 0;
+        this.random = random;
     }
 
     /**
@@ -37,10 +58,16 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return size;
     }
 
+    // a new array of n items; the one unchecked cast in the class
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int n) {
+        return (T[]) new Object[n];
+    }
+
     // resize the underlying array holding the elements
     private void resize(int capacity) {
         assert capacity >= size;
-        Item[] temp = (Item[]) new Object[capacity];
+        Item[] temp = newArray(capacity);
         for (int i = 0; i < size; i++)
             temp[i] = items[i];
         items = temp;
@@ -58,6 +85,75 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (size == items.length)
             resize(2 * items.length); // double size of array if necessary
         items[size++] = item;
+        modCount++;
+    }
+
+    /**
+     * Add every item of the collection to the queue, resizing the array at
+     * most once
+     * 
+     * @param c
+     *            the items to add
+     * @throws java.lang.NullPointerException
+     *             if c or any of its items is null; the queue is then left
+     *             unchanged
+     */
+    public void addAll(Collection<? extends Item> c) {
+        Object[] a = c.toArray();
+        for (Object item : a) {
+            if (item == null)
+                throw new NullPointerException("Null item added");
+        }
+        if ((long) size + a.length > 1 << 30)
+            throw new IllegalStateException("Randomized Queue too large");
+        int capacity = items.length;
+        while (capacity < size + a.length)
+            capacity *= 2;
+        if (capacity != items.length)
+            resize(capacity);
+        System.arraycopy(a, 0, items, size, a.length);
+        size += a.length;
+        modCount++;
+    }
+
+    /**
+     * Removes up to max items, each chosen uniformly at random from those
+     * left, and adds them to the collection in the order chosen, resizing
+     * the array at most once
+     * 
+     * @param c
+     *            the collection to add the items to
+     * @param max
+     *            the largest number of items to move
+     * @return the number of items moved
+     */
+    public int drainTo(Collection<? super Item> c, int max) {
+        if (c == null)
+            throw new NullPointerException("Null collection");
+        if (max < 0)
+            throw new IllegalArgumentException("max < 0");
+        int n = Math.min(max, size);
+        for (int k = 0; k < n; k++) {
+            int pos = random.uniform(size);
+            c.add(items[pos]);
+            items[pos] = items[--size];
+            items[size] = null;
+        }
+        if (n > 0)
+            modCount++;
+        shrinkToFit();
+        return n;
+    }
+
+    // shrink as far as repeated dequeue() would have, all at once; it stops
+    // shrinking when the last item leaves
+    private void shrinkToFit() {
+        int capacity = items.length;
+        int last = Math.max(size, 1);
+        while (last <= capacity / 4)
+            capacity /= 2;
+        if (capacity != items.length)
+            resize(capacity);
     }
 
     /**
@@ -68,16 +164,116 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     public Item dequeue() {
         if (size == 0)
             throw new NoSuchElementException("Randomized Queue underflow");
-        int pos = StdRandom.uniform(size);
+        int pos = random.uniform(size);
         Item item = items[pos];
         items[pos] = items[--size];
         items[size] = null;
+        modCount++;
         // shrink size of items if necessary
         if (size > 0 && size == items.length / 4)
             resize(items.length / 2);
         return item;
     }
 
+    /**
+     * Removes and returns k distinct items chosen uniformly at random, in
+     * random order, resizing the array at most once
+     * 
+     * @param k
+     *            the number of items to remove
+     * @return the items removed
+     * @throws java.util.NoSuchElementException
+     *             if the queue has fewer than k items
+     */
+    public List<Item> dequeue(int k) {
+        Item[] into = newArray(k < 0 ? 0 : k);
+        dequeue(k, into);
+        return Arrays.asList(into);
+    }
+
+    /**
+     * Removes k distinct items chosen uniformly at random and stores them,
+     * in random order, in into[0] to into[k - 1], resizing the array at most
+     * once
+     * 
+     * @param k
+     *            the number of items to remove
+     * @param into
+     *            the array to store them in
+     * @throws java.util.NoSuchElementException
+     *             if the queue has fewer than k items
+     */
+    public void dequeue(int k, Item[] into) {
+        checkBatch(k, into);
+        Item[] a = items;
+        int n = size;
+        for (int j = 0; j < k; j++) {
+            int pos = random.uniform(n);
+            into[j] = a[pos];
+            a[pos] = a[--n];
+            a[n] = null;
+        }
+        size = n;
+        if (k > 0)
+            modCount++;
+        shrinkToFit();
+    }
+
+    /**
+     * Returns (but not deletes) k distinct items chosen uniformly at random,
+     * in random order
+     * 
+     * @param k
+     *            the number of items to return
+     * @return the items chosen
+     * @throws java.util.NoSuchElementException
+     *             if the queue has fewer than k items
+     */
+    public List<Item> sample(int k) {
+        Item[] into = newArray(k < 0 ? 0 : k);
+        sample(k, into);
+        return Arrays.asList(into);
+    }
+
+    /**
+     * Stores k distinct items chosen uniformly at random, in random order,
+     * in into[0] to into[k - 1], leaving the same items on the queue. It runs
+     * k steps of Fisher-Yates on the queue's own array, in O(k) time and
+     * allocating nothing; since that reorders the items, iterators in use
+     * fail fast afterwards as they would after any change.
+     * 
+     * @param k
+     *            the number of items to choose
+     * @param into
+     *            the array to store them in
+     * @throws java.util.NoSuchElementException
+     *             if the queue has fewer than k items
+     */
+    public void sample(int k, Item[] into) {
+        checkBatch(k, into);
+        Item[] a = items;
+        int n = size;
+        for (int j = 0; j < k; j++) {
+            int pos = j + random.uniform(n - j);
+            Item item = a[pos];
+            a[pos] = a[j];
+            a[j] = item;
+            into[j] = item;
+        }
+        if (k > 0)
+            modCount++;
+    }
+
+    // throw unless 0 <= k <= size and into has room for k items
+    private void checkBatch(int k, Item[] into) {
+        if (k < 0)
+            throw new IllegalArgumentException("k < 0");
+        if (into.length < k)
+            throw new IllegalArgumentException("array shorter than " + k);
+        if (k > size)
+            throw new NoSuchElementException("Randomized Queue underflow");
+    }
+
     /**
      * Returns (but not deletes) a random item
      * 
@@ -86,12 +282,17 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     public Item sample() {
         if (size == 0)
             throw new NoSuchElementException("Randomized Queue underflow");
-        int pos = StdRandom.uniform(size);
+        int pos = random.uniform(size);
         return items[pos];
     }
 
     /**
-     * Returns and independent iterator over the items in random order
+     * Returns and independent iterator over the items in random order. The
+     * order is drawn lazily, one Fisher-Yates step per next(), so the first k
+     * items cost O(k) time and space whatever the size of the queue. The
+     * iterator reads the queue itself, so it fails fast with a
+     * ConcurrentModificationException if the queue is changed while it is
+     * in use.
      * 
      * @return an iterator over the items in random order
      */
@@ -99,18 +300,56 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return new RandomIterator();
     }
 
-    // an iterator
+    /**
+     * Returns an independent spliterator over the items in random order. It
+     * walks a shuffled copy of the items, so every split covers a part of
+     * one uniformly random order; it knows its exact size and splits in
+     * half, so parallel streams divide the work evenly. Like the iterator it
+     * throws a ConcurrentModificationException if the queue is changed
+     * while it is in use.
+     * 
+     * @return a spliterator over the items in random order
+     */
+    public Spliterator<Item> spliterator() {
+        return new RandomSpliterator(shuffledCopy(), 0, size, modCount);
+    }
+
+    /**
+     * Returns a sequential stream of the items in random order
+     * 
+     * @return a sequential stream of the items
+     */
+    public Stream<Item> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a possibly parallel stream of the items in random order
+     * 
+     * @return a possibly parallel stream of the items
+     */
+    public Stream<Item> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // a copy of the items in uniformly random order
+    private Item[] shuffledCopy() {
+        Item[] shuffled = Arrays.copyOf(items, size);
+        random.shuffle(shuffled);
+        return shuffled;
+    }
+
+    // an iterator running Fisher-Yates over the indices 0 to size - 1 on
+    // demand: positions [0, i) hold the indices not yet returned, position p
+    // holding swapped.get(p, p), and each next() swaps a random one of them
+    // to position i - 1 and returns its item
     private class RandomIterator implements Iterator<Item> {
         private int i = size;
-        private Item[] shuffledItems;
-
-        public RandomIterator() {
-            shuffledItems = (Item[]) new Object[size];
-            System.arraycopy(items, 0, shuffledItems, 0, size);
-            StdRandom.shuffle(shuffledItems);
-        }
+        private IntIntMap swapped = new IntIntMap(Math.min(size, 16));
+        private final int expectedModCount = modCount;
 
         public boolean hasNext() {
+            checkForComodification(expectedModCount);
             return i > 0;
         }
 
@@ -121,7 +360,70 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         public Item next() {
             if (!hasNext())
                 throw new NoSuchElementException();
-            return shuffledItems[--i];
+            int pos = random.uniform(i--);
+            int index = swapped.get(pos, pos);
+            if (pos != i)
+                swapped.put(pos, swapped.get(i, i));
+            return items[index];
+        }
+    }
+
+    // a spliterator over positions [k, hi) of a shuffled copy of the items
+    private class RandomSpliterator implements Spliterator<Item> {
+        private final Item[] shuffled;
+        private int k; // position of the next item
+        private final int hi; // one past the last position
+        private final int expectedModCount;
+
+        RandomSpliterator(Item[] shuffled, int k, int hi,
+                int expectedModCount) {
+            this.shuffled = shuffled;
+            this.k = k;
+            this.hi = hi;
+            this.expectedModCount = expectedModCount;
+        }
+
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (action == null)
+                throw new NullPointerException();
+            checkForComodification(expectedModCount);
+            if (k >= hi)
+                return false;
+            action.accept(shuffled[k++]);
+            return true;
         }
+
+        public void forEachRemaining(Consumer<? super Item> action) {
+            if (action == null)
+                throw new NullPointerException();
+            for (; k < hi; k++) {
+                checkForComodification(expectedModCount);
+                action.accept(shuffled[k]);
+            }
+            checkForComodification(expectedModCount);
+        }
+
+        public Spliterator<Item> trySplit() {
+            int mid = (k + hi) >>> 1;
+            if (mid <= k)
+                return null;
+            int lo = k;
+            k = mid;
+            return new RandomSpliterator(shuffled, lo, mid, expectedModCount);
+        }
+
+        public long estimateSize() {
+            return hi - k;
+        }
+
+        public int characteristics() {
+            return SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    // throw if the queue has changed since an iterator or spliterator began
+    private void checkForComodification(int expectedModCount) {
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
     }
 }
@@ -0,0 +1,449 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The SpillingDeque class is a Deque for very many items that keeps them
+ * serialized outside the Java heap. Items are encoded by a Codec into
+ * fixed-size segments of direct memory, each record framed as [length]
+ * [payload] [length] so that a segment can be consumed from either end. The
+ * two segments at each end are always in direct memory, and a third may be;
+ * a segment is copied to a memory-mapped spill file once it is fourth from
+ * the nearer end, and copied back when it comes within two of an end again.
+ * Adds and removes are amortized O(1), and the iterator reads spilled
+ * segments in place without loading them.
+ *
+ * The spill file is created when the deque is and deleted by close().
+ */
+public class SpillingDeque<Item> implements Iterable<Item>, Closeable {
+    /** default segment size, 1 MiB */
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+
+    private static final int FRAME = 8; // a length before and after a record
+    private static final long EXTENT_BYTES = 1L << 30; // mapped at a time
+    private static final int SPARE_BUFFERS = 2; // direct buffers kept for reuse
+
+    private Codec<Item> codec; // encodes and decodes items
+    private int segmentBytes; // size of a segment
+    private ArrayDeque<Segment> segments; // from front to end
+    private ArrayDeque<ByteBuffer> spare; // free direct buffers
+    private int size; // number of elements on deque
+
+    private FileChannel spill; // the spill file
+    private int slotsPerExtent; // segments per mapped extent
+    private List<MappedByteBuffer> extents; // extent e maps slots from e * per
+    private IntDeque freeSlots; // slots of the spill file not in use
+    private int nextSlot; // slots below this have been used
+    private boolean closed; // set by close()
+
+    // records in bytes [start, end) of buf, or of the spill slot if buf is
+    // null; records are added below start or at end
+    private static final class Segment {
+        ByteBuffer buf; // resident bytes, or null if spilled
+        int slot = -1; // spill slot, or -1 if resident
+        int start;
+        int end;
+        int count; // number of records
+    }
+
+    /**
+     * Constructs an empty SpillingDeque with segments of
+     * DEFAULT_SEGMENT_BYTES, spilling to the given file
+     *
+     * @throws java.io.IOException
+     *             if the spill file cannot be created
+     */
+    public SpillingDeque(Codec<Item> codec, Path spillFile) throws IOException {
+        this(codec, spillFile, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Constructs an empty SpillingDeque with segments of the given size,
+     * spilling to the given file; an item's encoding must fit in a segment
+     * less 8 bytes of framing
+     *
+     * @throws java.io.IOException
+     *             if the spill file cannot be created
+     */
+    public SpillingDeque(Codec<Item> codec, Path spillFile, int segmentBytes)
+            throws IOException {
+        if (codec == null || spillFile == null)
+            throw new NullPointerException("Null codec or spill file");
+        if (segmentBytes <= FRAME || segmentBytes > EXTENT_BYTES)
+            throw new IllegalArgumentException("segment size "
+                    + segmentBytes + " outside " + (FRAME + 1) + ".."
+                    + EXTENT_BYTES);
+        this.codec = codec;
+        this.segmentBytes = segmentBytes;
+        segments = new ArrayDeque<Segment>();
+        spare = new ArrayDeque<ByteBuffer>();
+        slotsPerExtent = (int) (EXTENT_BYTES / segmentBytes);
+        extents = new ArrayList<MappedByteBuffer>();
+        freeSlots = new IntDeque();
+        spill = FileChannel.open(spillFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Is this deque empty?
+     *
+     * @return true if this deque is empty; false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of items on this deque
+     *
+     * @return the number of items on this deque
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Inserts item at the front of the deque
+     *
+     * @param item
+     *            the item to insert
+     * @throws java.io.UncheckedIOException
+     *             if a segment cannot be spilled
+     * @throws java.lang.IllegalStateException
+     *             if the deque has been closed
+     */
+    public void addFirst(Item item) {
+        ensureOpen();
+        int n = measure(item);
+        Segment head = segments.peekFirst();
+        if (head == null || head.start < n + FRAME) {
+            head = newSegment();
+            head.start = segmentBytes;
+            head.end = segmentBytes;
+            segments.addFirst(head);
+            spillFourth(segments.iterator());
+        }
+        head.start -= n + FRAME;
+        write(head.buf, head.start, item, n);
+        head.count++;
+        size++;
+    }
+
+    /**
+     * Inserts the item at the end of the deque
+     *
+     * @param item
+     *            the item to insert
+     * @throws java.io.UncheckedIOException
+     *             if a segment cannot be spilled
+     * @throws java.lang.IllegalStateException
+     *             if the deque has been closed
+     */
+    public void addLast(Item item) {
+        ensureOpen();
+        int n = measure(item);
+        Segment tail = segments.peekLast();
+        if (tail == null || segmentBytes - tail.end < n + FRAME) {
+            tail = newSegment();
+            segments.addLast(tail);
+            spillFourth(segments.descendingIterator());
+        }
+        write(tail.buf, tail.end, item, n);
+        tail.end += n + FRAME;
+        tail.count++;
+        size++;
+    }
+
+    /**
+     * Removes and returns the item at the front of the deque
+     *
+     * @return the item at the front of the deque
+     * @throws java.io.UncheckedIOException
+     *             if a spilled segment cannot be loaded
+     * @throws java.lang.IllegalStateException
+     *             if the deque has been closed
+     */
+    public Item removeFirst() {
+        ensureOpen();
+        if (isEmpty())
+            throw new NoSuchElementException("Deque underflow");
+        Segment head = segments.peekFirst();
+        int n = head.buf.getInt(head.start);
+        Item item = read(head.buf, head.start, n);
+        head.start += n + FRAME;
+        if (--head.count == 0) {
+            spare(segments.pollFirst());
+            loadSecond(segments.iterator());
+        }
+        size--;
+        return item;
+    }
+
+    /**
+     * Removes and returns the item at the end of the deque
+     *
+     * @return the item at the end of the deque
+     * @throws java.io.UncheckedIOException
+     *             if a spilled segment cannot be loaded
+     * @throws java.lang.IllegalStateException
+     *             if the deque has been closed
+     */
+    public Item removeLast() {
+        ensureOpen();
+        if (isEmpty())
+            throw new NoSuchElementException("Deque underflow");
+        Segment tail = segments.peekLast();
+        int n = tail.buf.getInt(tail.end - 4);
+        tail.end -= n + FRAME;
+        Item item = read(tail.buf, tail.end, n);
+        if (--tail.count == 0) {
+            spare(segments.pollLast());
+            loadSecond(segments.descendingIterator());
+        }
+        size--;
+        return item;
+    }
+
+    /**
+     * Deletes the spill file and drops the deque's direct buffers and
+     * mappings of the file; any later add, remove or iteration throws an
+     * IllegalStateException. Closing a closed deque has no effect.
+     *
+     * @throws java.io.IOException
+     *             if the spill file cannot be closed
+     */
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        segments.clear();
+        spare.clear();
+        extents.clear();
+        freeSlots = null;
+        size = 0;
+        spill.close();
+    }
+
+    // throw if the deque has been closed
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("SpillingDeque closed");
+    }
+
+    // the length of the item's encoding, checked to fit in a segment
+    private int measure(Item item) {
+        if (item == null)
+            throw new NullPointerException("Null item added");
+        int n = codec.size(item);
+        if (n < 0 || n > segmentBytes - FRAME)
+            throw new IllegalArgumentException("encoding of " + n
+                    + " bytes does not fit a segment of " + segmentBytes);
+        return n;
+    }
+
+    // write the record [n][item][n] at offset pos of buf
+    private void write(ByteBuffer buf, int pos, Item item, int n) {
+        buf.putInt(pos, n);
+        ByteBuffer payload = buf.duplicate();
+        payload.limit(pos + 4 + n).position(pos + 4);
+        codec.encode(item, payload.slice().order(ByteOrder.LITTLE_ENDIAN));
+        buf.putInt(pos + 4 + n, n);
+    }
+
+    // decode the record of payload length n at offset pos of buf
+    private Item read(ByteBuffer buf, int pos, int n) {
+        ByteBuffer payload = buf.duplicate();
+        payload.limit(pos + 4 + n).position(pos + 4);
+        return codec.decode(payload.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    // an empty resident segment, records to be added from offset 0
+    private Segment newSegment() {
+        Segment s = new Segment();
+        s.buf = takeBuffer();
+        return s;
+    }
+
+    // a direct buffer of segmentBytes, from the pool if it has one
+    private ByteBuffer takeBuffer() {
+        if (!spare.isEmpty()) return spare.pop();
+        return ByteBuffer.allocateDirect(segmentBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // return a removed segment's buffer to the pool
+    private void spare(Segment s) {
+        if (spare.size() < SPARE_BUFFERS) spare.push(s.buf);
+        s.buf = null;
+    }
+
+    // after a segment is added at one end, spill the fourth segment from
+    // that end, given an iterator from it, unless it is within two of the
+    // other end. Spilling the fourth but loading the second, below, leaves
+    // a segment of slack, so a deque whose size hovers at a segment boundary
+    // does not copy a segment out and back on every add and remove.
+    private void spillFourth(Iterator<Segment> fromEnd) {
+        if (segments.size() < 6) return;
+        fromEnd.next();
+        fromEnd.next();
+        fromEnd.next();
+        spillOut(fromEnd.next());
+    }
+
+    // after a segment is removed from one end, load the second segment from
+    // that end, given an iterator from it, so the two at each end stay
+    // resident; the first is resident already
+    private void loadSecond(Iterator<Segment> fromEnd) {
+        if (segments.size() < 2) return;
+        fromEnd.next();
+        spillIn(fromEnd.next());
+    }
+
+    // copy a segment that is no longer near the head or tail to the spill
+    // file
+    private void spillOut(Segment s) {
+        if (s.buf == null) return;
+        int slot = freeSlots.isEmpty() ? nextSlot++ : freeSlots.removeLast();
+        ByteBuffer dst = slot(slot);
+        ByteBuffer src = s.buf.duplicate();
+        src.limit(s.end).position(s.start);
+        dst.position(s.start);
+        dst.put(src);
+        spare(s);
+        s.slot = slot;
+    }
+
+    // copy a segment that came within two of the head or tail back into
+    // direct memory
+    private void spillIn(Segment s) {
+        if (s.buf != null) return;
+        ByteBuffer src = slot(s.slot);
+        src.limit(s.end).position(s.start);
+        ByteBuffer buf = takeBuffer();
+        buf.position(s.start);
+        buf.put(src);
+        buf.clear();
+        s.buf = buf;
+        freeSlots.addLast(s.slot);
+        s.slot = -1;
+    }
+
+    // a buffer over spill slot k, mapping a new extent if needed
+    private ByteBuffer slot(int k) {
+        ensureOpen();
+        int e = k / slotsPerExtent;
+        try {
+            while (extents.size() <= e) {
+                long bytes = (long) slotsPerExtent * segmentBytes;
+                extents.add(spill.map(FileChannel.MapMode.READ_WRITE,
+                        extents.size() * bytes, bytes));
+            }
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+        ByteBuffer extent = extents.get(e).duplicate();
+        int off = (k % slotsPerExtent) * segmentBytes;
+        extent.limit(off + segmentBytes).position(off);
+        return extent.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns an iterator that iterates over items from front to end in the
+     * deque, reading spilled segments from the spill file in place
+     *
+     * @return an iterator that iterates over items from front to end in the
+     *         deque
+     * @throws java.lang.IllegalStateException
+     *             if the deque has been closed
+     */
+    public Iterator<Item> iterator() {
+        ensureOpen();
+        return new DequeIterator();
+    }
+
+    // an iterator
+    private class DequeIterator implements Iterator<Item> {
+        private Iterator<Segment> rest = segments.iterator();
+        private ByteBuffer buf; // bytes of the current segment
+        private int pos; // offset of the next record in buf
+        private int end; // end of the current segment's records
+
+        public boolean hasNext() {
+            while (pos >= end) {
+                if (!rest.hasNext()) return false;
+                Segment s = rest.next();
+                buf = s.buf != null ? s.buf : slot(s.slot);
+                pos = s.start;
+                end = s.end;
+            }
+            return true;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public Item next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int n = buf.getInt(pos);
+            Item item = read(buf, pos, n);
+            pos += n + FRAME;
+            return item;
+        }
+    }
+
+    // add and remove random numbers of longs at both ends with small
+    // segments, checking against java.util.ArrayDeque
+    public static void main(String[] args) throws IOException {
+        int n = Integer.parseInt(args[0]);
+        int segmentBytes = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        Path file = java.nio.file.Files.createTempFile("deque", ".spill");
+        RandomSource random = new Xoshiro256StarStar(args.length > 2
+                ? Long.parseLong(args[2]) : System.nanoTime());
+        ArrayDeque<Long> expected = new ArrayDeque<Long>();
+        boolean same = true;
+        try (SpillingDeque<Long> dq = new SpillingDeque<Long>(Codec.LONG,
+                file, segmentBytes)) {
+            for (long k = 0; k < n; k++) {
+                if (random.uniform(2) == 0) {
+                    dq.addFirst(k);
+                    expected.addFirst(k);
+                } else {
+                    dq.addLast(k);
+                    expected.addLast(k);
+                }
+                if (random.uniform(3) == 0) {
+                    if (random.uniform(2) == 0) {
+                        same &= dq.removeFirst().equals(expected.pollFirst());
+                    } else {
+                        same &= dq.removeLast().equals(expected.pollLast());
+                    }
+                }
+            }
+            Iterator<Long> it = expected.iterator();
+            for (long x : dq) {
+                same &= it.hasNext() && it.next() == x;
+            }
+            same &= !it.hasNext() && dq.size() == expected.size();
+            StdOut.println("items            = " + dq.size());
+            StdOut.println("spill file bytes = "
+                    + (long) dq.nextSlot * segmentBytes);
+            while (!dq.isEmpty()) {
+                same &= dq.removeFirst().equals(expected.pollFirst());
+            }
+        }
+        StdOut.println("matches ArrayDeque = " + same);
+    }
+}
@@ -1,23 +1,165 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * Client program that takes a command-line integer k; reads in a sequence of N
  * strings from standard input; and prints out exactly k of them, uniformly at
  * random. Each item from the sequence can be printed out at most once.
  * 
+ * With -stream as the first argument it keeps only k strings, choosing them
+ * by reservoir sampling as the input goes by, so memory does not grow with N;
+ * tokens that are skipped are never decoded into Strings.
+ * 
  * @author Shuai Wang
  */
 public class Subset {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        boolean stream = args[0].equals("-stream");
+        if (stream) args = Arrays.copyOfRange(args, 1, args.length);
         int k = Integer.parseInt(args[0]);
 
-        RandomizedQueue<String> rq = new RandomizedQueue<String>();
+        // an optional second argument seeds a private generator
+        RandomizedQueue<String> rq;
+        RandomSource random;
+        if (args.length > 1) {
+            long seed = Long.parseLong(args[1]);
+            random = new Xoshiro256StarStar(seed);
+            rq = new RandomizedQueue<String>(random);
+        } else {
+            random = StdRandomSource.INSTANCE;
+            rq = new RandomizedQueue<String>();
+        }
 
-        while (!StdIn.isEmpty()) {
-            String s = StdIn.readString();
-            rq.enqueue(s);
+        if (stream) {
+            String[] sample = reservoir(new Tokens(System.in), k, random);
+            for (String s : sample) {
+                if (s != null) rq.enqueue(s);
+            }
+        } else {
+            while (!StdIn.isEmpty()) {
+                String s = StdIn.readString();
+                rq.enqueue(s);
+            }
         }
 
         for (int i = 0; i < k; i++)
             StdOut.println(rq.dequeue());
     }
 
+    /**
+     * Chooses k of the tokens uniformly at random with Li's Algorithm L: the
+     * first k fill the reservoir, and after that the gap to the next token
+     * to keep is drawn from its geometric distribution, so only O(k log(N/k))
+     * tokens are decoded and random numbers drawn
+     *
+     * @return the tokens chosen, in no particular order; null entries if
+     *         there were fewer than k
+     */
+    private static String[] reservoir(Tokens in, int k, RandomSource random)
+            throws IOException {
+        if (k < 0) throw new IllegalArgumentException("k < 0");
+        String[] sample = new String[k];
+        for (int i = 0; i < k; i++) {
+            sample[i] = in.next();
+            if (sample[i] == null) return sample;
+        }
+        if (k == 0) return sample;
+        double w = Math.exp(Math.log(open(random)) / k);
+        while (true) {
+            double gap = Math.floor(Math.log(open(random)) / Math.log1p(-w));
+            if (in.skip(gap >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) gap)
+                    < gap) return sample;
+            String s = in.next();
+            if (s == null) return sample;
+            sample[random.uniform(k)] = s;
+            w *= Math.exp(Math.log(open(random)) / k);
+        }
+    }
+
+    // a uniform double in (0, 1], safe to take the log of
+    private static double open(RandomSource random) {
+        return 1.0 - random.uniform();
+    }
+
+    // whitespace-separated tokens of a byte stream, read in large blocks;
+    // tokens can be skipped without decoding them
+    private static class Tokens {
+        // the bytes Character.isWhitespace accepts, 0x1C-0x1F among them,
+        // so tokens split just as StdIn.readString() splits them
+        private static final boolean[] SPACE = new boolean[256];
+
+        static {
+            for (char c = 0; c < SPACE.length; c++) {
+                SPACE[c] = Character.isWhitespace(c);
+            }
+        }
+
+        private InputStream in;
+        private byte[] buf = new byte[1 << 16];
+        private int pos; // next byte of buf to read
+        private int lim; // end of the bytes read into buf
+        private byte[] token = new byte[64]; // bytes of the token being read
+
+        Tokens(InputStream in) {
+            this.in = in;
+        }
+
+        // move past whitespace; false at end of input
+        private boolean skipSpace() throws IOException {
+            while (true) {
+                while (pos < lim) {
+                    if (!SPACE[buf[pos] & 0xFF]) return true;
+                    pos++;
+                }
+                if (!fill()) return false;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            int n = in.read(buf);
+            pos = 0;
+            lim = Math.max(n, 0);
+            return n > 0;
+        }
+
+        /**
+         * Skips up to n tokens
+         *
+         * @return the number of tokens skipped, less than n at end of input
+         */
+        long skip(long n) throws IOException {
+            for (long skipped = 0; skipped < n; skipped++) {
+                if (!skipSpace()) return skipped;
+                do {
+                    while (pos < lim && !SPACE[buf[pos] & 0xFF]) {
+                        pos++;
+                    }
+                } while (pos == lim && fill());
+            }
+            return n;
+        }
+
+        /**
+         * Reads the next token
+         *
+         * @return the next token, or null at end of input
+         */
+        String next() throws IOException {
+            if (!skipSpace()) return null;
+            int len = 0;
+            do {
+                int start = pos;
+                while (pos < lim && !SPACE[buf[pos] & 0xFF]) {
+                    pos++;
+                }
+                if (len + pos - start > token.length)
+                    token = Arrays.copyOf(token, 2 * (len + pos - start));
+                System.arraycopy(buf, start, token, len, pos - start);
+                len += pos - start;
+            } while (pos == lim && fill());
+            return new String(token, 0, len, StandardCharsets.UTF_8);
+        }
+    }
 }
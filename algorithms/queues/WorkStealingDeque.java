@@ -0,0 +1,230 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The WorkStealingDeque class is a concurrent deque for a work-stealing
+ * scheduler, after Chase and Lev, "Dynamic Circular Work-Stealing Deque",
+ * with the memory ordering of Le, Pop, Cohen and Zappa Nardelli, "Correct and
+ * Efficient Work-Stealing for Weak Memory Models". One owner thread pushes
+ * and pops items at the bottom, like a stack; any number of thief threads
+ * steal items from the top, oldest first. No operation takes a lock: the
+ * owner only races with thieves for the last item, and thieves race with
+ * each other through a compareAndSet on top.
+ *
+ * Items live in a circular array whose capacity is a power of two; the
+ * owner doubles it when it fills up and publishes the copy with a release
+ * store. The array never shrinks, so a deque is as large as its busiest
+ * moment. Up to a capacity's worth of stolen items may stay referenced by
+ * the array until their slots are reused.
+ */
+public class WorkStealingDeque<Item> {
+    private static final int MIN_CAPACITY = 16; // a power of two
+
+    private static final VarHandle TOP;
+    private static final VarHandle BOTTOM;
+    private static final VarHandle ARRAY;
+    private static final VarHandle SLOT;
+
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            TOP = l.findVarHandle(WorkStealingDeque.class, "top", long.class);
+            BOTTOM = l.findVarHandle(WorkStealingDeque.class, "bottom",
+                    long.class);
+            ARRAY = l.findVarHandle(WorkStealingDeque.class, "array",
+                    Object[].class);
+            SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // items [top, bottom) are on the deque, item k in array[k & mask];
+    // top only grows, by compareAndSet; bottom is written by the owner only
+    private volatile long top;
+    private volatile long bottom;
+    private volatile Object[] array;
+
+    /**
+     * Constructs an empty WorkStealingDeque
+     */
+    public WorkStealingDeque() {
+        array = new Object[MIN_CAPACITY];
+    }
+
+    /**
+     * Is this deque empty? Only a snapshot while other threads are using it.
+     *
+     * @return true if this deque is empty; false otherwise
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of items on this deque; only a snapshot while other
+     * threads are using it
+     *
+     * @return the number of items on this deque
+     */
+    public int size() {
+        long t = (long) TOP.getAcquire(this);
+        long b = (long) BOTTOM.getAcquire(this);
+        return (int) Math.max(0, b - t);
+    }
+
+    /**
+     * Inserts the item at the bottom of the deque; owner thread only
+     *
+     * @param item
+     *            the item to insert
+     */
+    public void push(Item item) {
+        if (item == null)
+            throw new NullPointerException("Null item added");
+        long b = (long) BOTTOM.getOpaque(this);
+        long t = (long) TOP.getAcquire(this);
+        Object[] a = (Object[]) ARRAY.getOpaque(this);
+        if (b - t > a.length - 1) {
+            a = grow(a, t, b);
+        }
+        SLOT.setOpaque(a, (int) b & (a.length - 1), item);
+        // publish the item to thieves that see the new bottom
+        BOTTOM.setRelease(this, b + 1);
+    }
+
+    // copy items [t, b) to an array twice as large and publish it
+    private Object[] grow(Object[] a, long t, long b) {
+        Object[] temp = new Object[2 * a.length];
+        for (long k = t; k < b; k++) {
+            temp[(int) k & (temp.length - 1)] = a[(int) k & (a.length - 1)];
+        }
+        ARRAY.setRelease(this, temp);
+        return temp;
+    }
+
+    /**
+     * Removes and returns the item at the bottom of the deque, the one most
+     * recently pushed; owner thread only
+     *
+     * @return the item at the bottom of the deque, or null if it is empty
+     *         (or its last item was just stolen)
+     */
+    public Item pop() {
+        long b = (long) BOTTOM.getOpaque(this) - 1;
+        Object[] a = (Object[]) ARRAY.getOpaque(this);
+        BOTTOM.setOpaque(this, b);
+        // the claim on item b must be visible before top is read, or a thief
+        // and the owner could both take it
+        VarHandle.fullFence();
+        long t = (long) TOP.getOpaque(this);
+        if (t > b) { // empty
+            BOTTOM.setOpaque(this, b + 1);
+            return null;
+        }
+        int slot = (int) b & (a.length - 1);
+        Item item = (Item) SLOT.getOpaque(a, slot);
+        if (t < b) { // not the last item, so no thief can take it
+            SLOT.setOpaque(a, slot, null); // to avoid loitering
+            return item;
+        }
+        // the last item: race the thieves for it
+        if (!TOP.compareAndSet(this, t, t + 1)) {
+            item = null;
+        }
+        BOTTOM.setOpaque(this, b + 1);
+        return item;
+    }
+
+    /**
+     * Removes and returns the item at the top of the deque, the oldest one;
+     * any thread may steal
+     *
+     * @return the item at the top of the deque, or null if it is empty
+     */
+    public Item steal() {
+        while (true) {
+            long t = (long) TOP.getAcquire(this);
+            // read top before bottom, as pop() writes bottom before top
+            VarHandle.fullFence();
+            long b = (long) BOTTOM.getAcquire(this);
+            if (t >= b) return null;
+            Object[] a = (Object[]) ARRAY.getAcquire(this);
+            Item item = (Item) SLOT.getOpaque(a, (int) t & (a.length - 1));
+            if (TOP.compareAndSet(this, t, t + 1)) {
+                return item;
+            }
+            // lost to another thief or the owner; try the new top
+        }
+    }
+
+    // push and pop tasks on one thread while others steal them, and check
+    // that every task is taken exactly once
+    public static void main(String[] args) throws InterruptedException {
+        final int n = Integer.parseInt(args[0]);
+        int thieves = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors() - 1;
+
+        final WorkStealingDeque<Integer> deque =
+                new WorkStealingDeque<Integer>();
+        final AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        final int[] stolen = new int[thieves];
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread[] workers = new Thread[thieves];
+        for (int w = 0; w < thieves; w++) {
+            final int id = w;
+            workers[w] = new Thread(new Runnable() {
+                public void run() {
+                    while (true) {
+                        Integer task = deque.steal();
+                        if (task != null) {
+                            taken.incrementAndGet(task);
+                            stolen[id]++;
+                        } else if (done.get()) {
+                            return;
+                        } else {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            workers[w].start();
+        }
+
+        // the owner pushes tasks in bursts and pops about half of each
+        long start = System.nanoTime();
+        int popped = 0;
+        for (int k = 0; k < n;) {
+            int burst = Math.min(1 + k % 64, n - k);
+            for (int j = 0; j < burst; j++) {
+                deque.push(k++);
+            }
+            for (int j = 0; j < burst / 2; j++) {
+                Integer task = deque.pop();
+                if (task == null) break;
+                taken.incrementAndGet(task);
+                popped++;
+            }
+        }
+        for (Integer task = deque.pop(); task != null; task = deque.pop()) {
+            taken.incrementAndGet(task);
+            popped++;
+        }
+        done.set(true);
+        for (Thread worker : workers) worker.join();
+        long elapsed = System.nanoTime() - start;
+
+        int wrong = 0;
+        for (int k = 0; k < n; k++) {
+            if (taken.get(k) != 1) wrong++;
+        }
+        int totalStolen = 0;
+        for (int s : stolen) totalStolen += s;
+        StdOut.println("popped by owner  = " + popped);
+        StdOut.println("stolen by " + thieves + " thieves = " + totalStolen);
+        StdOut.println("elapsed          = " + elapsed / 1000000 + " ms");
+        StdOut.println("tasks not taken exactly once = " + wrong);
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * The RandomSource interface is a source of uniformly distributed random
+ * numbers that a class can be given instead of calling the global StdRandom.
+ * Implementations need only provide nextLong() and split(); the bounded
+ * draws are derived from nextLong() without modulo bias, and in all but a
+ * vanishing fraction of calls without a division.
+ */
+public interface RandomSource {
+    /**
+     * Returns a uniformly random long
+     *
+     * @return a uniformly random long
+     */
+    long nextLong();
+
+    /**
+     * Returns a new source whose stream is independent of this one's,
+     * advancing this source as needed
+     *
+     * @return an independent source
+     */
+    RandomSource split();
+
+    /**
+     * Returns a random integer uniformly in [0, n)
+     *
+     * @param n
+     *            number of possible integers
+     * @return a random integer uniformly between 0 (inclusive) and n
+     *         (exclusive)
+     * @throws java.lang.IllegalArgumentException
+     *             if n <= 0
+     */
+    default int uniform(int n) {
+        if (n <= 0) throw new IllegalArgumentException("n <= 0");
+        // Lemire's multiply-shift: the high 32 bits of a 32x32-bit product
+        // are uniform once the few low products below 2^32 mod n are
+        // rejected, and that threshold is only computed when it might apply
+        long m = (nextLong() >>> 32) * n;
+        long low = m & 0xFFFFFFFFL;
+        if (low < n) {
+            long threshold = (1L << 32) % n;
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * n;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * Returns a random integer uniformly in [a, b)
+     *
+     * @return a random integer uniformly between a (inclusive) and b
+     *         (exclusive)
+     * @throws java.lang.IllegalArgumentException
+     *             if b <= a or b - a overflows an int
+     */
+    default int uniform(int a, int b) {
+        if (b <= a || (long) b - a > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("invalid range [" + a + ", "
+                    + b + ")");
+        return a + uniform(b - a);
+    }
+
+    /**
+     * Returns a random real number uniformly in [0, 1)
+     *
+     * @return a random real number uniformly between 0 (inclusive) and 1
+     *         (exclusive)
+     */
+    default double uniform() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Rearranges the elements of a[] in uniformly random order
+     *
+     * @param a
+     *            the array to shuffle
+     */
+    default void shuffle(Object[] a) {
+        int n = a.length;
+        for (int i = 0; i < n; i++) {
+            int r = i + uniform(n - i); // between i and n-1
+            Object temp = a[i];
+            a[i] = a[r];
+            a[r] = temp;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.SplittableRandom;
+
+/**
+ * The SplittableRandomSource class adapts java.util.SplittableRandom to the
+ * RandomSource interface. An instance is not thread-safe; split() gives an
+ * independent source for another thread.
+ */
+public class SplittableRandomSource implements RandomSource {
+    private SplittableRandom random; // the wrapped generator
+
+    /**
+     * Initializes a source from a seed
+     *
+     * @param seed
+     *            the seed; equal seeds give equal streams
+     */
+    public SplittableRandomSource(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    /**
+     * Initializes a source drawing from the given generator
+     */
+    public SplittableRandomSource(SplittableRandom random) {
+        if (random == null) throw new NullPointerException("Null random");
+        this.random = random;
+    }
+
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    public int uniform(int n) {
+        if (n <= 0) throw new IllegalArgumentException("n <= 0");
+        return random.nextInt(n);
+    }
+
+    public double uniform() {
+        return random.nextDouble();
+    }
+
+    public RandomSource split() {
+        return new SplittableRandomSource(random.split());
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * The StdRandomSource class is the RandomSource that draws from the global
+ * StdRandom, so a class given it behaves exactly as if it called StdRandom
+ * itself, including honouring StdRandom.setSeed. Since StdRandom is shared
+ * and not thread-safe, split() returns the same source; use it from one
+ * thread only.
+ */
+public final class StdRandomSource implements RandomSource {
+    /** the only instance */
+    public static final StdRandomSource INSTANCE = new StdRandomSource();
+
+    private StdRandomSource() { }
+
+    public long nextLong() {
+        long hi = StdRandom.uniform(1 << 16);
+        long mid = StdRandom.uniform(1 << 24);
+        long lo = StdRandom.uniform(1 << 24);
+        return (hi << 48) | (mid << 24) | lo;
+    }
+
+    public int uniform(int n) {
+        return StdRandom.uniform(n);
+    }
+
+    public double uniform() {
+        return StdRandom.uniform();
+    }
+
+    public void shuffle(Object[] a) {
+        StdRandom.shuffle(a);
+    }
+
+    public RandomSource split() {
+        return this;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * The Xoshiro256StarStar class is a fast, small-state RandomSource using the
+ * xoshiro256** generator of Blackman and Vigna, seeded through SplitMix64.
+ * An instance is not thread-safe; give each thread its own, for example by
+ * split(), which seeds a new generator from four outputs of this one.
+ */
+public class Xoshiro256StarStar implements RandomSource {
+    private long s0, s1, s2, s3; // generator state, never all zero
+
+    /**
+     * Initializes a generator from a seed
+     *
+     * @param seed
+     *            the seed; equal seeds give equal streams
+     */
+    public Xoshiro256StarStar(long seed) {
+        s0 = splitMix(seed += 0x9E3779B97F4A7C15L);
+        s1 = splitMix(seed += 0x9E3779B97F4A7C15L);
+        s2 = splitMix(seed += 0x9E3779B97F4A7C15L);
+        s3 = splitMix(seed + 0x9E3779B97F4A7C15L);
+    }
+
+    // a generator with the given state
+    private Xoshiro256StarStar(long s0, long s1, long s2, long s3) {
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    // one output of SplitMix64 for the given state
+    private static long splitMix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    public RandomSource split() {
+        // seeding the child from this stream's output, rather than jumping,
+        // keeps streams split off in any tree shape from lining up
+        Xoshiro256StarStar child = new Xoshiro256StarStar(nextLong(),
+                nextLong(), nextLong(), nextLong());
+        if ((child.s0 | child.s1 | child.s2 | child.s3) == 0) child.s0 = 1;
+        return child;
+    }
+}